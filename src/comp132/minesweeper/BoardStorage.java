@@ -0,0 +1,143 @@
+package comp132.minesweeper;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A BoardStorage holds the cells of a MineSweeperBoard in row-major
+ * order. Each cell has contents, which are one of the MineSweeperBoard
+ * constants or the number shown on an uncovered cell, and a count of
+ * the mines adjacent to it. MineSweeperBoard does all of the game logic;
+ * a storage only records what it is told.
+ */
+abstract class BoardStorage {
+
+	/**
+	 * Get the number of cells held by this storage.
+	 *
+	 * @return the number of cells.
+	 */
+	abstract int size();
+
+	/**
+	 * pre: index >= 0 && index < size()
+	 *
+	 * Get the contents of a cell.
+	 *
+	 * @param index the row-major index of the cell.
+	 * @return the contents of the cell.
+	 */
+	abstract int get(int index);
+
+	/**
+	 * pre: index >= 0 && index < size(); value is COVERED_CELL, MINE,
+	 *      FLAG, FLAGGED_MINE, UNCOVERED_MINE or getAdjacent(index)
+	 *
+	 * Set the contents of a cell.
+	 *
+	 * @param index the row-major index of the cell.
+	 * @param value the new contents of the cell.
+	 */
+	abstract void set(int index, int value);
+
+	/**
+	 * pre: index >= 0 && index < size()
+	 *
+	 * Get the number of mines adjacent to a cell.
+	 *
+	 * @param index the row-major index of the cell.
+	 * @return the number of adjacent mines.
+	 */
+	abstract int getAdjacent(int index);
+
+	/**
+	 * pre: index >= 0 && index < size(); 0 <= getAdjacent(index) + delta <= 8
+	 *
+	 * Change the number of mines adjacent to a cell.
+	 *
+	 * @param index the row-major index of the cell.
+	 * @param delta the amount to add to the count.
+	 */
+	abstract void addAdjacent(int index, int delta);
+
+	/**
+	 * Determine if this storage works out the adjacent mine counts from
+	 * its mines whenever they are asked for. If it does, addAdjacent does
+	 * nothing and a board need not count the mines around every cell
+	 * after placing them.
+	 *
+	 * @return true if the counts are always worked out afresh.
+	 */
+	boolean countsAdjacent() {
+		return false;
+	}
+
+	/**
+	 * Determine if the given cell contents hide or show a mine.
+	 *
+	 * @param value the contents of a cell.
+	 * @return true if value is MINE, FLAGGED_MINE or UNCOVERED_MINE.
+	 */
+	static boolean isMine(int value) {
+		return value == MineSweeperBoard.MINE || value == MineSweeperBoard.FLAGGED_MINE
+				|| value == MineSweeperBoard.UNCOVERED_MINE;
+	}
+
+	/**
+	 * Make a copy of every cell and count that shares nothing with this
+	 * storage. This copies one cell at a time into a compact storage; a
+	 * storage that keeps its cells in arrays can copy the arrays.
+	 *
+	 * @return the copy.
+	 */
+	BoardStorage copy() {
+		BoardStorage copy = new PackedBoardStorage(size());
+		for (int i = 0; i < size(); i++) {
+			copy.addAdjacent(i, getAdjacent(i));
+			copy.set(i, get(i));
+		}
+		return copy;
+	}
+
+	/**
+	 * Write every cell in the layout used by MineSweeperBoardIO: the
+	 * bitsets of mined, flagged and uncovered cells, 64 cells to a long,
+	 * then the adjacent mine counts, two cells to a byte. This packs the
+	 * cells a word at a time; a storage that already keeps them in that
+	 * form can write them directly.
+	 *
+	 * @param out the stream to write to.
+	 */
+	void writeCells(DataOutputStream out) throws IOException {
+		int cells = size();
+		for (int bitset = 0; bitset < 3; bitset++) {
+			for (int first = 0; first < cells; first += 64) {
+				long word = 0;
+				int last = Math.min(first + 64, cells);
+				for (int i = first; i < last; i++) {
+					int value = get(i);
+					boolean set;
+					if (bitset == 0) {
+						set = isMine(value);
+					} else if (bitset == 1) {
+						set = value == MineSweeperBoard.FLAG
+							|| value == MineSweeperBoard.FLAGGED_MINE;
+					} else {
+						set = value >= 0 || value == MineSweeperBoard.UNCOVERED_MINE;
+					}
+					if (set) {
+						word |= 1L << i;
+					}
+				}
+				out.writeLong(word);
+			}
+		}
+		for (int i = 0; i < cells; i += 2) {
+			int pair = getAdjacent(i);
+			if (i + 1 < cells) {
+				pair |= getAdjacent(i + 1) << 4;
+			}
+			out.writeByte(pair);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package comp132.minesweeper;
+
+import java.util.Arrays;
+
+/**
+ * A CellList holds the cells of a MineSweeperBoard that were changed
+ * by a single operation, in the order they were changed. Cells are
+ * stored as runs of consecutive row-major indices into the board, so
+ * that a cascade over a large empty area, which changes the cells of
+ * each row in order, takes one run per row rather than one entry per
+ * cell, and creates no object per cell.
+ */
+public class CellList {
+	// The first cell of each run, and the number of cells in this list
+	// before the end of each run.
+	private int[] starts;
+	private int[] ends;
+	private int runs;
+	private int columns;
+
+	// The run the last cell looked up was in, since cells are most often
+	// looked up in order.
+	private int lastRun;
+
+	/**
+	 * pre: columns > 0
+	 *
+	 * Construct a new, empty CellList for a board with the
+	 * specified number of columns.
+	 *
+	 * @param columns the number of columns on the board.
+	 */
+	public CellList(int columns) {
+		assert columns > 0 : "invalid number of columns";
+		this.columns = columns;
+		starts = new int[16];
+		ends = new int[16];
+	}
+
+	/**
+	 * Add a cell to the end of this list.
+	 *
+	 * @param index the row-major index of the cell.
+	 */
+	void add(int index) {
+		if (runs > 0 && starts[runs - 1] + length(runs - 1) == index) {
+			ends[runs - 1]++;
+			return;
+		}
+		if (runs == starts.length) {
+			starts = Arrays.copyOf(starts, runs * 2);
+			ends = Arrays.copyOf(ends, runs * 2);
+		}
+		starts[runs] = index;
+		ends[runs] = size() + 1;
+		runs++;
+	}
+
+	private int length(int run) {
+		return run == 0 ? ends[0] : ends[run] - ends[run - 1];
+	}
+
+	/**
+	 * Get the number of cells in this list.
+	 *
+	 * @return the number of cells in this list.
+	 */
+	public int size() {
+		return runs == 0 ? 0 : ends[runs - 1];
+	}
+
+	/**
+	 * Get the number of runs of consecutive cells this list is kept as.
+	 *
+	 * @return the number of runs.
+	 */
+	int getRuns() {
+		return runs;
+	}
+
+	/**
+	 * Determine if this list contains no cells.
+	 *
+	 * @return true if the list is empty and false otherwise.
+	 */
+	public boolean isEmpty() {
+		return runs == 0;
+	}
+
+	/**
+	 * pre: i >= 0 && i < size()
+	 *
+	 * Get the row of the i'th cell in this list.
+	 *
+	 * @param i the position of the cell in this list.
+	 * @return the row of the cell.
+	 */
+	public int getRow(int i) {
+		assert i >= 0 && i < size() : "invalid position";
+		return get(i) / columns;
+	}
+
+	/**
+	 * pre: i >= 0 && i < size()
+	 *
+	 * Get the column of the i'th cell in this list.
+	 *
+	 * @param i the position of the cell in this list.
+	 * @return the column of the cell.
+	 */
+	public int getCol(int i) {
+		assert i >= 0 && i < size() : "invalid position";
+		return get(i) % columns;
+	}
+
+	/**
+	 * Get the row-major index of the i'th cell, looking in the run of
+	 * the last cell asked for and the one after it before searching.
+	 */
+	private int get(int i) {
+		int run = lastRun;
+		if (i >= ends[run] || (run > 0 && i < ends[run - 1])) {
+			if (run + 1 < runs && i < ends[run + 1] && i >= ends[run]) {
+				run++;
+			} else {
+				int low = 0;
+				int high = runs - 1;
+				while (low < high) {
+					int mid = (low + high) >>> 1;
+					if (ends[mid] <= i) {
+						low = mid + 1;
+					} else {
+						high = mid;
+					}
+				}
+				run = low;
+			}
+			lastRun = run;
+		}
+		return starts[run] + i - (run == 0 ? 0 : ends[run - 1]);
+	}
+}
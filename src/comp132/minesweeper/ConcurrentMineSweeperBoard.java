@@ -0,0 +1,220 @@
+package comp132.minesweeper;
+
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A ConcurrentMineSweeperBoard is a MineSweeperBoard that many players
+ * can play at the same time from different threads. Every method takes
+ * effect atomically, as if the calls from all of the threads had been
+ * made one after another.
+ *
+ * The rows of the board are split into bands, each with its own lock.
+ * A move that changes one cell, such as a flag or uncovering a numbered
+ * cell, locks only the band holding that cell (and its neighbouring
+ * bands when setCell moves a mine), so players working in different
+ * parts of the board do not wait for each other. Uncovering an empty
+ * cell can cascade anywhere on the board, so it, like revealBoard,
+ * takes the whole board for itself.
+ *
+ * The board always uses the int storage, in which each cell is a
+ * separate array element. The compact storage packs many cells into
+ * one word, so two bands could not safely change it at the same time.
+ */
+public class ConcurrentMineSweeperBoard extends MineSweeperBoard {
+
+	private static final int MAX_STRIPES = 64;
+
+	// Single-cell moves share this lock; cascades and reveals own it.
+	private final ReentrantReadWriteLock boardLock = new ReentrantReadWriteLock();
+	private final ReentrantLock[] stripes;
+	private final int rowsPerStripe;
+
+	/**
+	 * pre: rows > 0 && cols > 0 && rows * cols <= MAX_CELLS &&
+	 *      numMines >= 0 && numMines <= rows * cols; rnd != null
+	 *
+	 * Construct a new board with the specified size and number of
+	 * mines, placed using the given random number generator.
+	 *
+	 * @param rows the number of rows on the board.
+	 * @param cols the number of columns on the board.
+	 * @param numMines the number of mines on the board.
+	 * @param rnd the source of randomness used to place the mines.
+	 */
+	public ConcurrentMineSweeperBoard(int rows, int cols, int numMines, Random rnd) {
+		super(rows, cols, numMines, rnd, false);
+		int numStripes = Math.min(rows, MAX_STRIPES);
+		rowsPerStripe = (rows + numStripes - 1) / numStripes;
+		stripes = new ReentrantLock[(rows + rowsPerStripe - 1) / rowsPerStripe];
+		for (int i = 0; i < stripes.length; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * Get the lock for the band holding a row. Rows off the board use
+	 * the nearest band, so that invalid cells can be looked at safely.
+	 */
+	private ReentrantLock stripe(int row) {
+		int i = Math.max(0, Math.min(row / rowsPerStripe, stripes.length - 1));
+		return stripes[i];
+	}
+
+	public int getCell(int row, int col) {
+		boardLock.readLock().lock();
+		ReentrantLock lock = stripe(row);
+		lock.lock();
+		try {
+			return super.getCell(row, col);
+		}
+		finally {
+			lock.unlock();
+			boardLock.readLock().unlock();
+		}
+	}
+
+	public int numAdjMines(int row, int col) {
+		boardLock.readLock().lock();
+		ReentrantLock lock = stripe(row);
+		lock.lock();
+		try {
+			return super.numAdjMines(row, col);
+		}
+		finally {
+			lock.unlock();
+			boardLock.readLock().unlock();
+		}
+	}
+
+	public CellList uncoverCell(int row, int col) {
+		boardLock.readLock().lock();
+		ReentrantLock lock = stripe(row);
+		lock.lock();
+		try {
+			if (super.getCell(row, col) != COVERED_CELL || super.numAdjMines(row, col) != 0) {
+				return super.uncoverCell(row, col);
+			}
+		}
+		finally {
+			lock.unlock();
+			boardLock.readLock().unlock();
+		}
+
+		// An empty cell starts a cascade, which may reach any band.
+		// The cell is looked at again because another player may have
+		// uncovered or flagged it in the meantime.
+		boardLock.writeLock().lock();
+		try {
+			return super.uncoverCell(row, col);
+		}
+		finally {
+			boardLock.writeLock().unlock();
+		}
+	}
+
+	public CellList chordCell(int row, int col) {
+		// A chord can open cascades anywhere, so it takes the whole board.
+		boardLock.writeLock().lock();
+		try {
+			return super.chordCell(row, col);
+		}
+		finally {
+			boardLock.writeLock().unlock();
+		}
+	}
+
+	public void flagCell(int row, int col) {
+		boardLock.readLock().lock();
+		ReentrantLock lock = stripe(row);
+		lock.lock();
+		try {
+			super.flagCell(row, col);
+		}
+		finally {
+			lock.unlock();
+			boardLock.readLock().unlock();
+		}
+	}
+
+	public void setCell(int numbRow, int numbCol, int value) {
+		// Moving a mine changes the counts of the neighbouring rows,
+		// which may be in the bands above and below. The bands are
+		// always locked from the top down, so two moves cannot each
+		// hold a band the other is waiting for.
+		boardLock.readLock().lock();
+		ReentrantLock above = stripe(numbRow - 1);
+		ReentrantLock here = stripe(numbRow);
+		ReentrantLock below = stripe(numbRow + 1);
+		above.lock();
+		here.lock();
+		below.lock();
+		try {
+			super.setCell(numbRow, numbCol, value);
+		}
+		finally {
+			below.unlock();
+			here.unlock();
+			above.unlock();
+			boardLock.readLock().unlock();
+		}
+	}
+
+	public void revealBoard() {
+		boardLock.writeLock().lock();
+		try {
+			super.revealBoard();
+		}
+		finally {
+			boardLock.writeLock().unlock();
+		}
+	}
+
+	public boolean gameWon() {
+		boardLock.readLock().lock();
+		try {
+			synchronized (this) {
+				return super.gameWon();
+			}
+		}
+		finally {
+			boardLock.readLock().unlock();
+		}
+	}
+
+	public boolean gameLost() {
+		boardLock.readLock().lock();
+		try {
+			synchronized (this) {
+				return super.gameLost();
+			}
+		}
+		finally {
+			boardLock.readLock().unlock();
+		}
+	}
+
+	public int getNumMines() {
+		boardLock.readLock().lock();
+		try {
+			synchronized (this) {
+				return super.getNumMines();
+			}
+		}
+		finally {
+			boardLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Moves in different bands update the running counts at the same
+	 * time, so each update, taking the cell out of its old count and
+	 * into its new one, is made in one step while holding this board's
+	 * monitor. The state queries hold the monitor too, so they never
+	 * see a cell that is in neither count.
+	 */
+	synchronized void recount(int old, int value) {
+		super.recount(old, value);
+	}
+}
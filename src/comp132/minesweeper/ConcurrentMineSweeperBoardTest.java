@@ -0,0 +1,177 @@
+package comp132.minesweeper;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class ConcurrentMineSweeperBoardTest {
+
+	private static void playAll(Thread[] players) throws InterruptedException {
+		for (Thread p : players) {
+			p.start();
+		}
+		for (Thread p : players) {
+			p.join();
+		}
+	}
+
+	@Test
+	public void testConcurrentFlags() throws InterruptedException {
+		final ConcurrentMineSweeperBoard board =
+			new ConcurrentMineSweeperBoard(64, 64, 500, new Random(1));
+		Thread[] players = new Thread[8];
+		for (int t = 0; t < players.length; t++) {
+			players[t] = new Thread(new Runnable() {
+				public void run() {
+					for (int r = 0; r < 64; r++) {
+						for (int c = 0; c < 64; c++) {
+							board.flagCell(r, c);
+						}
+					}
+				}
+			});
+		}
+		playAll(players);
+		// Every cell was flagged an even number of times.
+		Assert.assertEquals(500, board.getNumMines());
+		for (int r = 0; r < 64; r++) {
+			for (int c = 0; c < 64; c++) {
+				int cell = board.getCell(r, c);
+				Assert.assertTrue(cell == MineSweeperBoard.COVERED_CELL
+						|| cell == MineSweeperBoard.MINE);
+			}
+		}
+	}
+
+	@Test
+	public void testConcurrentUncoverMatchesSequential() throws InterruptedException {
+		final ConcurrentMineSweeperBoard board =
+			new ConcurrentMineSweeperBoard(100, 100, 1000, new Random(2));
+		MineSweeperBoard expected = new MineSweeperBoard(100, 100, 1000, new Random(2));
+		for (int r = 0; r < 100; r++) {
+			for (int c = 0; c < 100; c++) {
+				if (expected.getCell(r, c) == MineSweeperBoard.COVERED_CELL) {
+					expected.uncoverCell(r, c);
+				}
+			}
+		}
+
+		Thread[] players = new Thread[8];
+		for (int t = 0; t < players.length; t++) {
+			final long seed = t;
+			players[t] = new Thread(new Runnable() {
+				public void run() {
+					Random rnd = new Random(seed);
+					for (int i = 0; i < 20000; i++) {
+						int r = rnd.nextInt(100);
+						int c = rnd.nextInt(100);
+						if (board.getCell(r, c) == MineSweeperBoard.COVERED_CELL) {
+							board.uncoverCell(r, c);
+						}
+					}
+				}
+			});
+		}
+		playAll(players);
+		for (int r = 0; r < 100; r++) {
+			for (int c = 0; c < 100; c++) {
+				if (board.getCell(r, c) == MineSweeperBoard.COVERED_CELL) {
+					board.uncoverCell(r, c);
+				}
+				Assert.assertEquals(expected.getCell(r, c), board.getCell(r, c));
+			}
+		}
+		Assert.assertFalse(board.gameLost());
+		Assert.assertEquals(1000, board.getNumMines());
+	}
+
+	@Test
+	public void testListenersAddedDuringPlay() throws InterruptedException {
+		final ConcurrentMineSweeperBoard board =
+			new ConcurrentMineSweeperBoard(64, 64, 500, new Random(3));
+		final java.util.concurrent.atomic.AtomicInteger told =
+			new java.util.concurrent.atomic.AtomicInteger();
+		final MineSweeperBoardListener counter = new MineSweeperBoardListener() {
+			public void cellsChanged(MineSweeperBoard b, CellList changed) {
+				told.incrementAndGet();
+			}
+
+			public void boardChanged(MineSweeperBoard b) {
+			}
+		};
+		board.addBoardListener(counter);
+		Thread[] players = new Thread[8];
+		for (int t = 0; t < players.length; t++) {
+			final boolean churn = t == 0;
+			players[t] = new Thread(new Runnable() {
+				public void run() {
+					for (int i = 0; i < 4096; i++) {
+						if (churn) {
+							MineSweeperBoardListener other = new MineSweeperBoardListener() {
+								public void cellsChanged(MineSweeperBoard b, CellList changed) {
+								}
+
+								public void boardChanged(MineSweeperBoard b) {
+								}
+							};
+							board.addBoardListener(other);
+							board.removeBoardListener(other);
+						} else {
+							board.flagCell(i / 64, i % 64);
+						}
+					}
+				}
+			});
+		}
+		playAll(players);
+		// Every flag reached the listener that was there all along.
+		Assert.assertEquals(7 * 4096, told.get());
+	}
+
+	@Test
+	public void testGameWonNeverSeesHalfAMove() throws InterruptedException {
+		// One mine, flagged, and one safe cell left covered, which the
+		// player flags and unflags: the game is never won.
+		final ConcurrentMineSweeperBoard board =
+			new ConcurrentMineSweeperBoard(2, 2, 1, new Random(4));
+		int left = -1;
+		for (int i = 0; i < 4; i++) {
+			if (board.getCell(i / 2, i % 2) == MineSweeperBoard.MINE) {
+				board.flagCell(i / 2, i % 2);
+			} else if (left < 0) {
+				left = i;
+			} else {
+				board.uncoverCell(i / 2, i % 2);
+			}
+		}
+		final int cell = left;
+		final boolean[] stop = new boolean[1];
+		Thread player = new Thread(new Runnable() {
+			public void run() {
+				for (int i = 0; i < 400000; i++) {
+					board.flagCell(cell / 2, cell % 2);
+				}
+				synchronized (stop) {
+					stop[0] = true;
+				}
+			}
+		});
+		player.start();
+		int checks = 0;
+		while (true) {
+			synchronized (stop) {
+				if (stop[0]) {
+					break;
+				}
+			}
+			Assert.assertFalse(board.gameWon());
+			checks++;
+		}
+		player.join();
+		Assert.assertTrue(checks > 0);
+		Assert.assertFalse(board.gameWon());
+		Assert.assertEquals(MineSweeperBoard.COVERED_CELL, board.getCell(cell / 2, cell % 2));
+	}
+}
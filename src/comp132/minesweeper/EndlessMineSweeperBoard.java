@@ -0,0 +1,574 @@
+package comp132.minesweeper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * An EndlessMineSweeperBoard is a playing field with no edges. Every
+ * pair of ints is a cell, negative rows and columns included, and the
+ * player starts at (0, 0), whose neighbours are always free of mines.
+ *
+ * The field is split into square chunks of CHUNK_SIZE by CHUNK_SIZE
+ * cells. A chunk's mines are chosen from the board's seed and the
+ * chunk's position alone, so a chunk is only made when one of its cells
+ * is first looked at, and comes out the same every time it is made.
+ * Each chunk keeps its cells in a PackedBoardStorage, so numbers near
+ * the edge of a chunk count the mines in the chunks around it, and a
+ * cascade carries on into the next chunk as if there were no border.
+ *
+ * At most a fixed number of chunks are held in memory. When another
+ * chunk is needed, the one used least recently is dropped. If the player
+ * has changed it, it is first written to a spill file, from which it is
+ * read back when it is next needed; otherwise it is simply made again.
+ * However far the player goes, the heap holds the same number of chunks,
+ * and the file grows by one fixed-size record per chunk played in.
+ *
+ * Unlike MineSweeperBoard, this board cannot be won and tells no
+ * listeners; a viewer asks for the cells it shows.
+ */
+public class EndlessMineSweeperBoard {
+
+	/**
+	 * The number of rows and of columns in a chunk.
+	 */
+	public static final int CHUNK_SIZE = 64;
+
+	/**
+	 * The number of cells in a chunk.
+	 */
+	public static final int CHUNK_CELLS = CHUNK_SIZE * CHUNK_SIZE;
+
+	// A chunk row is one 64 bit word of a bitset, so a cell's row and
+	// column within its chunk are the low bits of its row and column.
+	private static final int SHIFT = 6;
+	private static final int MASK = CHUNK_SIZE - 1;
+
+	// The size of a spilled chunk: the mined, flagged and uncovered
+	// bitsets and the adjacent mine counts, as written by writeCells.
+	private static final int RECORD_SIZE = 3 * 8 * (CHUNK_CELLS / 64) + CHUNK_CELLS / 2;
+
+	private final long seed;
+	private final int minesPerChunk;
+	private final int maxChunks;
+
+	/*
+	 * The chunks held in memory, by key, least recently used first.
+	 * Putting a chunk in when the map is full drops the eldest one,
+	 * spilling it first if it has changed since it was made or read.
+	 */
+	private final LinkedHashMap<Long, Chunk> chunks;
+
+	/*
+	 * The most recently used chunk, which is never the one dropped, so
+	 * the cells of a cascade within one chunk skip the map.
+	 */
+	private long lastKey;
+	private Chunk last;
+
+	/*
+	 * The record of each chunk that has been spilled, and the file the
+	 * records are in, which is made when the first chunk is spilled.
+	 */
+	private final Map<Long, Integer> spilled = new HashMap<Long, Integer>();
+	private File spillFile;
+	private RandomAccessFile spill;
+
+	/*
+	 * The work stack of cascades, kept between them so that long games
+	 * do not keep growing a new one.
+	 */
+	private long[] stack = new long[16];
+
+	private long uncoveredCells;
+	private long flags;
+	private int uncoveredMines;
+
+	/**
+	 * A chunk in memory and whether it differs from the copy that would
+	 * be made or read if it were dropped.
+	 */
+	private static final class Chunk {
+		final PackedBoardStorage cells;
+		boolean changed;
+
+		Chunk(PackedBoardStorage cells) {
+			this.cells = cells;
+		}
+	}
+
+	/**
+	 * pre: CHUNK_CELLS / 8 <= minesPerChunk <= CHUNK_CELLS - 9;
+	 *      maxChunks >= 2
+	 *
+	 * Construct a new endless board on which every cell is covered.
+	 * At least one cell in eight must be a mine: on a sparser field
+	 * the empty cells join up into regions with no end, and uncovering
+	 * one of them would never finish.
+	 *
+	 * @param seed the seed from which every chunk's mines are chosen.
+	 * @param minesPerChunk the number of mines in each chunk.
+	 * @param maxChunks the most chunks to hold in memory at once.
+	 */
+	public EndlessMineSweeperBoard(long seed, int minesPerChunk, int maxChunks) {
+		assert minesPerChunk >= CHUNK_CELLS / 8 && minesPerChunk <= CHUNK_CELLS - 9
+			: "invalid number of mines";
+		assert maxChunks >= 2 : "invalid number of chunks";
+		this.seed = seed;
+		this.minesPerChunk = minesPerChunk;
+		this.maxChunks = maxChunks;
+		chunks = new LinkedHashMap<Long, Chunk>(2 * maxChunks, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+				if (size() <= EndlessMineSweeperBoard.this.maxChunks) {
+					return false;
+				}
+				if (eldest.getValue().changed) {
+					spill(eldest.getKey(), eldest.getValue());
+				}
+				return true;
+			}
+		};
+		lastKey = Long.MIN_VALUE;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public int getMinesPerChunk() {
+		return minesPerChunk;
+	}
+
+	/**
+	 * Get the contents of a cell: COVERED_CELL, MINE, FLAG, FLAGGED_MINE,
+	 * UNCOVERED_MINE or the number of mines adjacent to an uncovered cell,
+	 * as for MineSweeperBoard. Every cell exists.
+	 *
+	 * @param row the row containing the cell.
+	 * @param col the column containing the cell.
+	 * @return the contents of the cell.
+	 */
+	public int getCell(int row, int col) {
+		return chunk(row, col).cells.get(indexIn(row, col));
+	}
+
+	/**
+	 * Count the mines in the cells adjacent to a cell.
+	 *
+	 * @param row the row of the cell.
+	 * @param col the column of the cell.
+	 * @return the number of adjacent mines.
+	 */
+	public int numAdjMines(int row, int col) {
+		return chunk(row, col).cells.getAdjacent(indexIn(row, col));
+	}
+
+	/**
+	 * Uncover a cell as MineSweeperBoard.uncoverCell does. If it has no
+	 * adjacent mines the region around it is uncovered too, across as
+	 * many chunks as it reaches. A flagged or uncovered cell is left as
+	 * it is.
+	 *
+	 * @param row the row of the cell to be uncovered.
+	 * @param col the column of the cell to be uncovered.
+	 * @return the number of cells uncovered.
+	 */
+	public int uncoverCell(int row, int col) {
+		long start = MineSweeperMetrics.start();
+		int uncovered = 0;
+		int cell = getCell(row, col);
+		if (cell == MineSweeperBoard.MINE) {
+			put(row, col, MineSweeperBoard.UNCOVERED_MINE);
+			uncovered = 1;
+		} else if (cell == MineSweeperBoard.COVERED_CELL) {
+			uncovered = cascade(new long[] {pack(row, col)}, 1);
+		}
+		MineSweeperMetrics.uncovered(start, row, col, uncovered);
+		return uncovered;
+	}
+
+	/**
+	 * Uncover every covered neighbour of an uncovered number whose
+	 * flags match it, as MineSweeperBoard.chordCell does.
+	 *
+	 * @param row the row of the number.
+	 * @param col the column of the number.
+	 * @return the number of cells uncovered.
+	 */
+	public int chordCell(int row, int col) {
+		long start = MineSweeperMetrics.start();
+		int cell = getCell(row, col);
+		int flagged = 0;
+		for (int r = row - 1; r <= row + 1; r++) {
+			for (int c = col - 1; c <= col + 1; c++) {
+				int next = getCell(r, c);
+				if (next == MineSweeperBoard.FLAG || next == MineSweeperBoard.FLAGGED_MINE) {
+					flagged++;
+				}
+			}
+		}
+		int uncovered = 0;
+		if (cell > 0 && cell == flagged) {
+			long[] covered = new long[8];
+			int count = 0;
+			for (int r = row - 1; r <= row + 1; r++) {
+				for (int c = col - 1; c <= col + 1; c++) {
+					int next = getCell(r, c);
+					if (next == MineSweeperBoard.MINE) {
+						put(r, c, MineSweeperBoard.UNCOVERED_MINE);
+						uncovered++;
+					} else if (next == MineSweeperBoard.COVERED_CELL) {
+						covered[count++] = pack(r, c);
+					}
+				}
+			}
+			uncovered += cascade(covered, count);
+		}
+		MineSweeperMetrics.uncovered(start, row, col, uncovered);
+		return uncovered;
+	}
+
+	/**
+	 * Place or remove a flag, as MineSweeperBoard.flagCell does.
+	 *
+	 * @param row the row of the cell to be flagged/unflagged.
+	 * @param col the column of the cell to be flagged/unflagged.
+	 */
+	public void flagCell(int row, int col) {
+		long start = MineSweeperMetrics.start();
+		int cell = getCell(row, col);
+		if (cell == MineSweeperBoard.COVERED_CELL) {
+			put(row, col, MineSweeperBoard.FLAG);
+			flags++;
+		} else if (cell == MineSweeperBoard.FLAG) {
+			put(row, col, MineSweeperBoard.COVERED_CELL);
+			flags--;
+		} else if (cell == MineSweeperBoard.MINE) {
+			put(row, col, MineSweeperBoard.FLAGGED_MINE);
+			flags++;
+		} else if (cell == MineSweeperBoard.FLAGGED_MINE) {
+			put(row, col, MineSweeperBoard.MINE);
+			flags--;
+		} else {
+			return;
+		}
+		MineSweeperMetrics.flagged(start, row, col);
+	}
+
+	/**
+	 * Determine if the player has uncovered a mine.
+	 *
+	 * @return true if a mine has been uncovered and false otherwise.
+	 */
+	public boolean gameLost() {
+		MineSweeperMetrics.gameStateChecked();
+		return uncoveredMines > 0;
+	}
+
+	/**
+	 * Get the number of cells without a mine that have been uncovered.
+	 *
+	 * @return the number of cells.
+	 */
+	public long getUncoveredCells() {
+		return uncoveredCells;
+	}
+
+	/**
+	 * Get the number of flags, right or wrong, on the board.
+	 *
+	 * @return the number of flags.
+	 */
+	public long getFlags() {
+		return flags;
+	}
+
+	/**
+	 * Delete the spill file. The board must not be used afterwards.
+	 */
+	public void close() throws IOException {
+		if (spill != null) {
+			spill.close();
+			spill = null;
+			spillFile.delete();
+		}
+		chunks.clear();
+		last = null;
+	}
+
+	/**
+	 * Get the number of chunks held in memory.
+	 *
+	 * @return the number of chunks.
+	 */
+	int getLoadedChunks() {
+		return chunks.size();
+	}
+
+	/**
+	 * Get the number of chunks that have been written to the spill file.
+	 *
+	 * @return the number of chunks.
+	 */
+	int getSpilledChunks() {
+		return spilled.size();
+	}
+
+	/**
+	 * Uncover the given cells that are still covered and the empty
+	 * regions around them. Cells are kept on the work stack as packed row
+	 * and column pairs, and each is uncovered as it is pushed, as in
+	 * MineSweeperBoard, so no cell is pushed twice.
+	 */
+	private int cascade(long[] cells, int count) {
+		long before = uncoveredCells;
+		int top = 0;
+		for (int i = 0; i < count; i++) {
+			top = open((int) (cells[i] >> 32), (int) cells[i], top);
+		}
+		while (top > 0) {
+			long cell = stack[--top];
+			int row = (int) (cell >> 32);
+			int col = (int) cell;
+			for (int r = row - 1; r <= row + 1; r++) {
+				for (int c = col - 1; c <= col + 1; c++) {
+					top = open(r, c, top);
+				}
+			}
+		}
+		return (int) (uncoveredCells - before);
+	}
+
+	/**
+	 * Uncover a cell if it is covered, pushing it onto the work stack if
+	 * it has no adjacent mines.
+	 *
+	 * @return the new top of the stack.
+	 */
+	private int open(int row, int col, int top) {
+		Chunk chunk = chunk(row, col);
+		int index = indexIn(row, col);
+		if (chunk.cells.get(index) != MineSweeperBoard.COVERED_CELL) {
+			return top;
+		}
+		int adj = chunk.cells.getAdjacent(index);
+		chunk.cells.set(index, adj);
+		chunk.changed = true;
+		uncoveredCells++;
+		if (adj == 0) {
+			if (top == stack.length) {
+				long[] bigger = new long[stack.length * 2];
+				System.arraycopy(stack, 0, bigger, 0, top);
+				stack = bigger;
+			}
+			stack[top++] = pack(row, col);
+		}
+		return top;
+	}
+
+	/**
+	 * Store a flag, a covered cell or an uncovered mine in a cell.
+	 */
+	private void put(int row, int col, int value) {
+		Chunk chunk = chunk(row, col);
+		chunk.cells.set(indexIn(row, col), value);
+		chunk.changed = true;
+		if (value == MineSweeperBoard.UNCOVERED_MINE) {
+			uncoveredMines++;
+		}
+	}
+
+	private static long pack(int row, int col) {
+		return (long) row << 32 | (col & 0xFFFFFFFFL);
+	}
+
+	private static int indexIn(int row, int col) {
+		return (row & MASK) << SHIFT | (col & MASK);
+	}
+
+	/**
+	 * Get the chunk holding a cell, reading it back from the spill file
+	 * or making it if it is not in memory.
+	 */
+	private Chunk chunk(int row, int col) {
+		long key = pack(row >> SHIFT, col >> SHIFT);
+		if (key == lastKey) {
+			return last;
+		}
+		Chunk chunk = chunks.get(key);
+		if (chunk == null) {
+			Integer record = spilled.get(key);
+			if (record != null) {
+				chunk = new Chunk(unspill(record));
+			} else {
+				chunk = new Chunk(generate(row >> SHIFT, col >> SHIFT));
+			}
+			chunks.put(key, chunk);
+		}
+		lastKey = key;
+		last = chunk;
+		return chunk;
+	}
+
+	/**
+	 * Make the cells of a chunk from the seed. A chunk row is one word of
+	 * the mine bitset, so the mines around a cell are the bits either
+	 * side of it in three words, the words at a chunk's edge coming from
+	 * the chunks around it, which are chosen again for the purpose.
+	 */
+	private PackedBoardStorage generate(int chunkRow, int chunkCol) {
+		long start = MineSweeperMetrics.start();
+		long[][] around = new long[9][];
+		for (int dr = -1; dr <= 1; dr++) {
+			for (int dc = -1; dc <= 1; dc++) {
+				around[(dr + 1) * 3 + dc + 1] = mines(chunkRow + dr, chunkCol + dc);
+			}
+		}
+		long[] mined = around[4];
+		byte[] adjacent = new byte[CHUNK_CELLS / 2];
+		for (int r = 0; r < CHUNK_SIZE; r++) {
+			for (int c = 0; c < CHUNK_SIZE; c++) {
+				int count = -(int) (mined[r] >>> c & 1);
+				for (int dr = -1; dr <= 1; dr++) {
+					int block = r + dr < 0 ? 0 : r + dr == CHUNK_SIZE ? 6 : 3;
+					int word = (r + dr) & MASK;
+					count += minesNear(around[block + 1][word], around[block][word],
+							   around[block + 2][word], c);
+				}
+				int index = r << SHIFT | c;
+				adjacent[index >>> 1] |= count << ((index & 1) << 2);
+			}
+		}
+		MineSweeperMetrics.generated(start, CHUNK_SIZE, CHUNK_SIZE, minesPerChunk);
+		return new PackedBoardStorage(CHUNK_CELLS, mined, new long[CHUNK_CELLS / 64],
+					      new long[CHUNK_CELLS / 64], adjacent);
+	}
+
+	/**
+	 * Count the mines in a column and the columns either side of it in
+	 * one chunk row, given the same row of the chunks to the left and
+	 * to the right.
+	 */
+	private static int minesNear(long word, long left, long right, int col) {
+		if (col == 0) {
+			return Long.bitCount(word & 3L) + (int) (left >>> MASK);
+		} else if (col == MASK) {
+			return Long.bitCount(word >>> (MASK - 1)) + (int) (right & 1L);
+		}
+		return Long.bitCount(word >>> (col - 1) & 7L);
+	}
+
+	/**
+	 * Choose the mines of a chunk, one bit per cell. Mines are drawn as
+	 * MineSweeperBoard places them: random cells until there are enough
+	 * when at most half the free cells are mined, and selection sampling
+	 * otherwise. The cells around (0, 0) are kept free.
+	 */
+	private long[] mines(int chunkRow, int chunkCol) {
+		Random rnd = new Random(mix(seed, pack(chunkRow, chunkCol)));
+		long[] mined = new long[CHUNK_CELLS / 64];
+		int available = CHUNK_CELLS;
+		for (int i = 0; i < CHUNK_CELLS; i++) {
+			if (isKeptFree(chunkRow, chunkCol, i)) {
+				available--;
+			}
+		}
+		int needed = minesPerChunk;
+		if (needed <= available / 2) {
+			while (needed > 0) {
+				int index = rnd.nextInt(CHUNK_CELLS);
+				if ((mined[index >>> SHIFT] & 1L << index) == 0
+				    && !isKeptFree(chunkRow, chunkCol, index)) {
+					mined[index >>> SHIFT] |= 1L << index;
+					needed--;
+				}
+			}
+		} else {
+			for (int index = 0; index < CHUNK_CELLS && needed > 0; index++) {
+				if (isKeptFree(chunkRow, chunkCol, index)) {
+					continue;
+				}
+				if (rnd.nextInt(available) < needed) {
+					mined[index >>> SHIFT] |= 1L << index;
+					needed--;
+				}
+				available--;
+			}
+		}
+		return mined;
+	}
+
+	/**
+	 * Determine if a cell of a chunk is (0, 0) or one of its neighbours.
+	 */
+	private static boolean isKeptFree(int chunkRow, int chunkCol, int index) {
+		int row = (chunkRow << SHIFT) + (index >>> SHIFT);
+		int col = (chunkCol << SHIFT) + (index & MASK);
+		return row >= -1 && row <= 1 && col >= -1 && col <= 1;
+	}
+
+	/**
+	 * Spread the bits of a seed and a chunk key over a whole long, so
+	 * that neighbouring chunks get unrelated generators.
+	 */
+	private static long mix(long seed, long key) {
+		long z = seed + key * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Write a chunk to its record in the spill file, giving it the next
+	 * record if it has never been spilled.
+	 */
+	private void spill(long key, Chunk chunk) {
+		try {
+			if (spill == null) {
+				spillFile = File.createTempFile("minesweeper", ".chunks");
+				spillFile.deleteOnExit();
+				spill = new RandomAccessFile(spillFile, "rw");
+			}
+			Integer record = spilled.get(key);
+			if (record == null) {
+				record = spilled.size();
+				spilled.put(key, record);
+			}
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(RECORD_SIZE);
+			chunk.cells.writeCells(new DataOutputStream(bytes));
+			spill.seek((long) record * RECORD_SIZE);
+			spill.write(bytes.toByteArray());
+		} catch (IOException e) {
+			throw new IllegalStateException("cannot spill chunk", e);
+		}
+	}
+
+	/**
+	 * Read a chunk back from its record in the spill file.
+	 */
+	private PackedBoardStorage unspill(int record) {
+		byte[] bytes = new byte[RECORD_SIZE];
+		try {
+			spill.seek((long) record * RECORD_SIZE);
+			spill.readFully(bytes);
+		} catch (IOException e) {
+			throw new IllegalStateException("cannot read spilled chunk", e);
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		long[][] bits = new long[3][CHUNK_CELLS / 64];
+		for (long[] words : bits) {
+			buffer.asLongBuffer().get(words);
+			buffer.position(buffer.position() + 8 * words.length);
+		}
+		byte[] adjacent = new byte[CHUNK_CELLS / 2];
+		buffer.get(adjacent);
+		return new PackedBoardStorage(CHUNK_CELLS, bits[0], bits[1], bits[2], adjacent);
+	}
+}
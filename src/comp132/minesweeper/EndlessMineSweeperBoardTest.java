@@ -0,0 +1,75 @@
+package comp132.minesweeper;
+
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class EndlessMineSweeperBoardTest {
+
+	@Test
+	public void testCountsCrossChunks() throws IOException {
+		EndlessMineSweeperBoard board = new EndlessMineSweeperBoard(11, 700, 64);
+		EndlessMineSweeperBoard again = new EndlessMineSweeperBoard(11, 700, 2);
+		Random rnd = new Random(12);
+		for (int i = 0; i < 3000; i++) {
+			// Mostly cells on or beside a chunk border, either side of zero.
+			int row = (rnd.nextInt(8) - 4) * 64 + rnd.nextInt(3) - 1;
+			int col = rnd.nextInt(2) == 0 ? rnd.nextInt(600) - 300 : (rnd.nextInt(8) - 4) * 64;
+			int mines = 0;
+			for (int r = row - 1; r <= row + 1; r++) {
+				for (int c = col - 1; c <= col + 1; c++) {
+					if ((r != row || c != col) && board.getCell(r, c) == MineSweeperBoard.MINE) {
+						mines++;
+					}
+				}
+			}
+			Assert.assertEquals(mines, board.numAdjMines(row, col));
+			// A chunk made again from the seed is the same chunk.
+			Assert.assertEquals(board.getCell(row, col), again.getCell(row, col));
+		}
+		board.close();
+		again.close();
+	}
+
+	@Test
+	public void testOriginIsSafe() throws IOException {
+		for (long seed = 0; seed < 20; seed++) {
+			EndlessMineSweeperBoard board = new EndlessMineSweeperBoard(seed, 1200, 16);
+			Assert.assertEquals(0, board.numAdjMines(0, 0));
+			Assert.assertTrue(board.uncoverCell(0, 0) >= 9);
+			Assert.assertFalse(board.gameLost());
+			board.close();
+		}
+	}
+
+	@Test
+	public void testSpilledChunksComeBack() throws IOException {
+		EndlessMineSweeperBoard small = new EndlessMineSweeperBoard(5, 600, 4);
+		EndlessMineSweeperBoard large = new EndlessMineSweeperBoard(5, 600, 1000);
+		Random rnd = new Random(6);
+		for (int i = 0; i < 2000; i++) {
+			int row = rnd.nextInt(1000) - 500;
+			int col = rnd.nextInt(1000) - 500;
+			if (rnd.nextInt(3) == 0) {
+				small.flagCell(row, col);
+				large.flagCell(row, col);
+			} else if (large.getCell(row, col) != MineSweeperBoard.MINE) {
+				Assert.assertEquals(large.uncoverCell(row, col), small.uncoverCell(row, col));
+			}
+			Assert.assertTrue(small.getLoadedChunks() <= 4);
+		}
+		Assert.assertTrue(small.getSpilledChunks() > 4);
+		Assert.assertEquals(large.getUncoveredCells(), small.getUncoveredCells());
+		Assert.assertEquals(large.getFlags(), small.getFlags());
+		for (int row = -520; row < 520; row += 3) {
+			for (int col = -520; col < 520; col++) {
+				Assert.assertEquals(large.getCell(row, col), small.getCell(row, col));
+			}
+		}
+		small.close();
+		large.close();
+	}
+}
@@ -0,0 +1,55 @@
+package comp132.minesweeper;
+
+import java.util.Arrays;
+
+/**
+ * A BoardStorage that keeps the contents of each cell in an int and
+ * its adjacent mine count in a byte. This is the simplest and fastest
+ * storage and is used for the normal levels of play.
+ */
+class IntBoardStorage extends BoardStorage {
+	private int[] cells;
+	private byte[] adjacent;
+
+	/**
+	 * pre: size > 0
+	 *
+	 * Construct a storage in which every cell is COVERED_CELL and
+	 * has no adjacent mines.
+	 *
+	 * @param size the number of cells.
+	 */
+	IntBoardStorage(int size) {
+		assert size > 0 : "invalid size";
+		cells = new int[size];
+		adjacent = new byte[size];
+		Arrays.fill(cells, MineSweeperBoard.COVERED_CELL);
+	}
+
+	int size() {
+		return cells.length;
+	}
+
+	int get(int index) {
+		return cells[index];
+	}
+
+	void set(int index, int value) {
+		cells[index] = value;
+	}
+
+	int getAdjacent(int index) {
+		return adjacent[index];
+	}
+
+	void addAdjacent(int index, int delta) {
+		adjacent[index] += delta;
+	}
+
+	BoardStorage copy() {
+		IntBoardStorage copy = new IntBoardStorage(1);
+		copy.cells = cells.clone();
+		copy.adjacent = adjacent.clone();
+		return copy;
+	}
+}
@@ -0,0 +1,93 @@
+package comp132.minesweeper;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A BoardStorage that works directly on a saved game mapped into
+ * memory, so a very large game can be resumed without first reading
+ * it onto the heap. The cells are laid out as in PackedBoardStorage:
+ * a bitset each of mined, flagged and uncovered cells, then the 4 bit
+ * adjacent mine counts, as written by MineSweeperBoardIO.
+ *
+ * Only the pages of the file that the game touches are read, and the
+ * buffer is normally mapped privately, so changes made while playing
+ * never reach the file.
+ */
+class MappedBoardStorage extends BoardStorage {
+	private final int size;
+	private final ByteBuffer buffer;
+	private final int mined;
+	private final int flagged;
+	private final int uncovered;
+	private final int adjacent;
+
+	/**
+	 * pre: size > 0; buffer holds the bitsets and counts starting at
+	 *      offset, which is a multiple of 8
+	 *
+	 * Construct a storage over the cells held by a buffer.
+	 *
+	 * @param size the number of cells.
+	 * @param buffer the buffer holding the cells.
+	 * @param offset the position of the first bitset in the buffer.
+	 */
+	MappedBoardStorage(int size, ByteBuffer buffer, int offset) {
+		assert size > 0 : "invalid size";
+		assert offset % 8 == 0 : "bitsets not aligned";
+		int words = (size + 63) >>> 6;
+		this.size = size;
+		this.buffer = buffer;
+		mined = offset;
+		flagged = mined + 8 * words;
+		uncovered = flagged + 8 * words;
+		adjacent = uncovered + 8 * words;
+		assert buffer.capacity() >= adjacent + ((size + 1) >>> 1) : "buffer too small";
+	}
+
+	int size() {
+		return size;
+	}
+
+	int get(int index) {
+		int word = (index >>> 6) << 3;
+		long bit = 1L << index;
+		if ((buffer.getLong(mined + word) & bit) != 0) {
+			if ((buffer.getLong(flagged + word) & bit) != 0) {
+				return MineSweeperBoard.FLAGGED_MINE;
+			} else if ((buffer.getLong(uncovered + word) & bit) != 0) {
+				return MineSweeperBoard.UNCOVERED_MINE;
+			}
+			return MineSweeperBoard.MINE;
+		} else if ((buffer.getLong(flagged + word) & bit) != 0) {
+			return MineSweeperBoard.FLAG;
+		} else if ((buffer.getLong(uncovered + word) & bit) != 0) {
+			return getAdjacent(index);
+		}
+		return MineSweeperBoard.COVERED_CELL;
+	}
+
+	void set(int index, int value) {
+		int word = (index >>> 6) << 3;
+		long bit = 1L << index;
+		boolean isFlagged = value == MineSweeperBoard.FLAG
+				|| value == MineSweeperBoard.FLAGGED_MINE;
+		boolean isUncovered = value >= 0 || value == MineSweeperBoard.UNCOVERED_MINE;
+		setBit(mined + word, bit, isMine(value));
+		setBit(flagged + word, bit, isFlagged);
+		setBit(uncovered + word, bit, isUncovered);
+	}
+
+	private void setBit(int position, long bit, boolean on) {
+		long bits = buffer.getLong(position);
+		buffer.putLong(position, on ? bits | bit : bits & ~bit);
+	}
+
+	int getAdjacent(int index) {
+		return (buffer.get(adjacent + (index >>> 1)) >>> ((index & 1) << 2)) & 0xF;
+	}
+
+	void addAdjacent(int index, int delta) {
+		int position = adjacent + (index >>> 1);
+		buffer.put(position, (byte) (buffer.get(position) + (delta << ((index & 1) << 2))));
+	}
+}
@@ -3,18 +3,32 @@ package comp132.minesweeper;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
 
 public class MineSweeper {
 
     private static int level = MineSweeperBoard.BEGINNER_LEVEL;
+    private static int rows = MineSweeperBoard.getLevelRows(level);
+    private static int cols = MineSweeperBoard.getLevelColumns(level);
+    private static int mines = MineSweeperBoard.getLevelMines(level);
+    private static boolean custom = false;
+    private static MineSweeperTopology topology = MineSweeperTopology.SQUARE;
     private static boolean gameOn = false;
 
+    // Boards for the levels of play are generated in the background
+    // from startup, so that a new game starts at once.
+    private static final MineSweeperBoardPool pool = new MineSweeperBoardPool(4);
+
     private static JFrame window;
 
-    private static final ImageIcon EMPTY_ICON = new ImageIcon("icons/empty.jpg");
-    private static final ImageIcon FLAG_ICON = new ImageIcon("icons/flag.jpg");
+    private static final ImageIcon EMPTY_ICON = MineSweeperIcons.getIcon(MineSweeperIcons.EMPTY);
+    private static final ImageIcon FLAG_ICON = MineSweeperIcons.getIcon(MineSweeperIcons.FLAG);
 
     private static MineSweeperBoard theBoard;
+    private static MineSweeperJournal journal;
     private static MineSweeperPanel thePanel;
     private static MineSweeperMenuHandler h;
 
@@ -79,37 +93,112 @@ public class MineSweeper {
 
     public static void setLevel(int newLevel) {
 	level = newLevel;
+	setBoardSize(MineSweeperBoard.getLevelRows(newLevel),
+		     MineSweeperBoard.getLevelColumns(newLevel),
+		     MineSweeperBoard.getLevelMines(newLevel));
+	custom = false;
+    }
+
+    public static void setBoardSize(int newRows, int newCols, int newMines) {
+	rows = newRows;
+	cols = newCols;
+	mines = newMines;
+	custom = true;
     }
 
     public static int getLevel() {
 	return level;
     }
 
+    public static void setTopology(MineSweeperTopology newTopology) {
+	topology = newTopology;
+    }
+
     public static void revealBoard() {
 	theBoard.revealBoard();
 	thePanel.revealBoard();
     }
 
+    /**
+     * Take back the last move of the game being played.
+     */
+    public static void undo() {
+	if (gameOn) {
+	    journal.undo();
+	}
+    }
+
+    /**
+     * Make the last move taken back again.
+     */
+    public static void redo() {
+	if (gameOn) {
+	    journal.redo();
+	    if (theBoard.gameWon()) {
+		gameWasWon();
+	    }
+	    else if (theBoard.gameLost()) {
+		gameWasLost();
+	    }
+	}
+    }
+
     public static void makeNewBoard() {
-	theBoard = new MineSweeperBoard(level);
+	// Custom boards, and boards of other shapes than the square grid,
+	// place their mines on the first click, from a seed the journal
+	// keeps. Boards from the pool already have their mines, which the
+	// journal records with the board, unless the pool was empty and
+	// handed back a board that also uses the seed. The journal keeps
+	// only the seed of a board still waiting for its mines, not a copy.
+	long seed = new Random().nextLong();
+	if (custom || topology != MineSweeperTopology.SQUARE) {
+	    theBoard = new MineSweeperBoard(rows, cols, mines, topology, seed);
+	} else {
+	    theBoard = pool.take(level, seed);
+	}
+	journal = makeJournal(theBoard, seed);
 	Container thePane = window.getContentPane();
 
 	// Get Rid of old panel if one exists!
 	thePane.removeAll();
 	
-	thePanel = new MineSweeperPanel(theBoard);
-	thePane.add(thePanel);  
+	thePanel = new MineSweeperPanel(journal);
+	thePane.add(new JScrollPane(thePanel));
 	window.pack();
 	window.repaint();
     }
 
+    /**
+     * Start the journal of a new game, closing the last one. If the
+     * minesweeper.journal property names a directory, every game is
+     * written to a file of its own there; otherwise the moves are kept
+     * only for undo and redo.
+     */
+    private static MineSweeperJournal makeJournal(MineSweeperBoard board, long seed) {
+	try {
+	    if (journal != null) {
+		journal.close();
+	    }
+	    String dir = System.getProperty("minesweeper.journal");
+	    if (dir != null) {
+		File file = new File(dir, "game-" + System.currentTimeMillis() + ".msj");
+		return new MineSweeperJournal(board, seed, new FileOutputStream(file));
+	    }
+	}
+	catch (IOException e) {
+	    System.err.println("Cannot write the game journal: " + e.getMessage());
+	}
+	return new MineSweeperJournal(board, seed);
+    }
+
     private static JMenuBar getMenuBar() {
 
 	JMenuBar menuBar = new JMenuBar();
 	JMenu gameMenu = new JMenu("Game");
 	JMenu levelMenu = new JMenu("Level");
+	JMenu shapeMenu = new JMenu("Shape");
 	
-	h = new MineSweeperMenuHandler(levelMenu, gameMenu);
+	h = new MineSweeperMenuHandler(levelMenu, gameMenu, shapeMenu);
 
 	JMenuItem startGame = new JMenuItem("Start Game");
 	startGame.addActionListener(h);
@@ -124,6 +213,18 @@ public class MineSweeper {
 	revealGame.addActionListener(h);
 	revealGame.setBackground(new Color(155,153,156));
 
+	JMenuItem undoMove = new JMenuItem("Undo");
+	undoMove.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z,
+				Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+	undoMove.addActionListener(h);
+	undoMove.setBackground(new Color(155,153,156));
+
+	JMenuItem redoMove = new JMenuItem("Redo");
+	redoMove.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y,
+				Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx()));
+	redoMove.addActionListener(h);
+	redoMove.setBackground(new Color(155,153,156));
+
 	JMenuItem exitGame = new JMenuItem("Exit");
 	exitGame.setBackground(new Color(155,153,156));
 	exitGame.addActionListener(h);
@@ -131,6 +232,8 @@ public class MineSweeper {
 	gameMenu.add(startGame);
 	gameMenu.add(restartGame);
 	gameMenu.add(revealGame);
+	gameMenu.add(undoMove);
+	gameMenu.add(redoMove);
 	gameMenu.add(exitGame);
 
 	JMenuItem beginnerLevel = new JMenuItem("Beginner");
@@ -147,13 +250,28 @@ public class MineSweeper {
 	expertLevel.addActionListener(h);
 	expertLevel.setIcon(EMPTY_ICON);
 	expertLevel.setBackground(new Color(155,153,156));
+
+	JMenuItem customLevel = new JMenuItem("Custom...");
+	customLevel.addActionListener(h);
+	customLevel.setIcon(EMPTY_ICON);
+	customLevel.setBackground(new Color(155,153,156));
 	
 	levelMenu.add(beginnerLevel);
 	levelMenu.add(intermediateLevel);
 	levelMenu.add(expertLevel);
+	levelMenu.add(customLevel);
+
+	for (MineSweeperTopology t : MineSweeperTopology.values()) {
+	    JMenuItem shape = new JMenuItem(t.getName());
+	    shape.addActionListener(h);
+	    shape.setIcon(t == topology ? FLAG_ICON : EMPTY_ICON);
+	    shape.setBackground(new Color(155,153,156));
+	    shapeMenu.add(shape);
+	}
 
 	menuBar.add(gameMenu);
 	menuBar.add(levelMenu);
+	menuBar.add(shapeMenu);
 
 	return(menuBar);
     }
@@ -1,10 +1,13 @@
 package comp132.minesweeper;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * A MineSweeperBoard holds a representation of the contents of
  * the playing field for a Mine Sweeper game. The playing field
- * is represented using a 2 dimensional array of integer values.
- * The integer value stored in each cell of the array indicates
+ * is represented as a grid of integer values, kept by a BoardStorage.
+ * The integer value stored in each cell of the grid indicates
  * the icon which will appear in the coresponding cell of the
  * graphical user interface for the game. 
  *
@@ -14,7 +17,51 @@ package comp132.minesweeper;
  * @version 1.0 Jan 2013
  */
 public class MineSweeperBoard {
-	private int[][] mineBoard;
+	private int rows;
+	private int cols;
+
+	/*
+	 * The cells of the board in row-major order. Each cell also carries
+	 * the number of mines adjacent to it; put keeps those counts up to
+	 * date whenever a mine is added to or removed from the board, so
+	 * reading a count never has to look at the neighbours.
+	 */
+	private BoardStorage mineBoard;
+
+	/*
+	 * Which cells are neighbours, and the offsets from each kind of
+	 * cell to its neighbours, built once for the size of the board.
+	 */
+	private MineSweeperTopology topology;
+	private MineSweeperTopology.Table neighbours;
+
+	/*
+	 * Running counts of the cells in each covered state, kept up to
+	 * date by put so that the game state queries never scan the board.
+	 * Uncovered cells holding a number are not counted.
+	 */
+	private int coveredCells;
+	private int unflaggedMines;
+	private int correctFlags;
+	private int wrongFlags;
+	private int uncoveredMines;
+
+	/*
+	 * The mines still to be placed and the generator to place them
+	 * with. A board made without a generator waits for the first cell
+	 * to be uncovered and then places its mines away from that cell.
+	 */
+	private int minesToPlace;
+	private java.util.Random placementRandom;
+
+	/*
+	 * A ConcurrentMineSweeperBoard tells its listeners about moves from
+	 * whichever thread made them, so listeners may be added or removed
+	 * while another thread is going through the list.
+	 */
+	private java.util.List<MineSweeperBoardListener> listeners =
+		new java.util.concurrent.CopyOnWriteArrayList<MineSweeperBoardListener>();
+
     /**
      * A constant value representing a covered cell.
      * A covered cell is any cell which does not contains
@@ -69,6 +116,41 @@ public class MineSweeperBoard {
      */
     public static final int EXPERT_LEVEL = 3;
 
+    /**
+     * The largest number of cells a board may have.
+     */
+    public static final int MAX_CELLS = 100000000;
+
+    /*
+     * Boards with more cells than this are stored in the compact form.
+     */
+    static final int COMPACT_CELLS = 1 << 20;
+
+    /*
+     * Compact boards with more cells than this store only their mines
+     * for every cell, and the rest of a cell's state only once a player
+     * has touched the region it is in.
+     */
+    static final int SPARSE_CELLS = 1 << 24;
+
+    /*
+     * Boards with at least this many cells count their adjacent mines
+     * and are revealed by all of the processors at once. The board is
+     * split into bands of BAND_CELLS cells or fewer, each a run of whole
+     * 64 cell words so that no two bands share a word of the compact
+     * storage.
+     */
+    private static final int PARALLEL_CELLS = 1 << 20;
+    private static final int BAND_CELLS = 1 << 16;
+
+    /*
+     * The board size and number of mines for each level of play,
+     * indexed by level.
+     */
+    private static final int[] LEVEL_ROWS = {0, 5, 10, 15};
+    private static final int[] LEVEL_COLUMNS = {0, 10, 15, 20};
+    private static final int[] LEVEL_MINES = {0, 3, 15, 45};
+
     /**
      * Construct a new fixed MineSweeperBoard for testing purposes.
      * The board should have 3 rows and 4 columns.  All cells should
@@ -76,14 +158,9 @@ public class MineSweeperBoard {
      * should contain MINE.
      */
     public MineSweeperBoard() {
-    	mineBoard = new int[3][4];
-    	for (int i = 0; i < mineBoard.length; i++){
-    		for (int j =0; j < mineBoard[0].length; j++){
-    			mineBoard[i][j] = COVERED_CELL;
-    		}
-    	}
-    	mineBoard[0][0]= MINE;
-    	mineBoard[2][1]= MINE;
+    	this(3, 4, false);
+    	put(0, MINE);
+    	put(9, MINE);
     }
 
     /**
@@ -105,58 +182,539 @@ public class MineSweeperBoard {
      * EXPERT_LEVEL        15x20               45
      * </pre>
      *
+     * The mines are not placed until the first cell is uncovered, and
+     * then never on that cell or, if there is room, its neighbours.
+     *
      * @param level the level of play.
      */
     public MineSweeperBoard(int level) {
+    	this(getLevelRows(level), getLevelColumns(level), getLevelMines(level));
+    }
+
+    /**
+     * pre: level == BEGINNER_LEVEL || level == INTERMEDIATE_LEVEL ||
+     *      level == EXPERT_LEVEL; rnd != null
+     *
+     * Construct a new MineSweeperBoard for play at the specified
+     * level, choosing the mine locations with the given random
+     * number generator. Boards built from generators with the same
+     * seed have their mines in the same places.
+     *
+     * @param level the level of play.
+     * @param rnd the source of randomness used to place the mines.
+     */
+    public MineSweeperBoard(int level, java.util.Random rnd) {
+    	this(getLevelRows(level), getLevelColumns(level), getLevelMines(level), rnd);
+    }
+
+    /**
+     * pre: rows > 0 && cols > 0 && rows * cols <= MAX_CELLS &&
+     *      numMines >= 0 && numMines <= rows * cols
+     *
+     * Construct a new MineSweeperBoard with the specified size and
+     * number of mines, placed at random. The mines are not placed until
+     * the first cell is uncovered, and then never on that cell or, if
+     * there is room, its neighbours, so the first click is always safe
+     * and a new board takes no time to make whatever its size. Until
+     * then every cell is covered, but getNumMines, gameWon and gameLost
+     * answer as they will once the mines are in place.
+     *
+     * @param rows the number of rows on the board.
+     * @param cols the number of columns on the board.
+     * @param numMines the number of mines on the board.
+     */
+    public MineSweeperBoard(int rows, int cols, int numMines) {
+    	this(rows, cols, numMines, MineSweeperTopology.SQUARE);
+    }
+
+    /**
+     * pre: rows > 0 && cols > 0 && rows * cols <= MAX_CELLS &&
+     *      numMines >= 0 && numMines <= rows * cols; topology != null
+     *
+     * Construct a new MineSweeperBoard of the specified size, number of
+     * mines and topology. The mines are placed on the first click, as
+     * by MineSweeperBoard(rows, cols, numMines).
+     *
+     * @param rows the number of rows on the board.
+     * @param cols the number of columns on the board.
+     * @param numMines the number of mines on the board.
+     * @param topology which cells are neighbours.
+     */
+    public MineSweeperBoard(int rows, int cols, int numMines, MineSweeperTopology topology) {
+    	assert rows > 0 && cols > 0 && (long) rows * cols <= MAX_CELLS : "invalid board size";
+    	assert numMines >= 0 && numMines <= rows * cols : "invalid number of mines";
+    	init(rows, cols, rows * cols > COMPACT_CELLS, topology);
+    	minesToPlace = numMines;
+    	placementRandom = new java.util.Random();
+    }
+
+    /**
+     * pre: rows > 0 && cols > 0 && rows * cols <= MAX_CELLS &&
+     *      numMines >= 0 && numMines <= rows * cols
+     *
+     * Construct a new MineSweeperBoard whose mines are placed on the
+     * first click, as by MineSweeperBoard(rows, cols, numMines, topology),
+     * but drawn from a random number generator made from the given seed, so
+     * that the same moves always give the same board.
+     *
+     * @param rows the number of rows on the board.
+     * @param cols the number of columns on the board.
+     * @param numMines the number of mines on the board.
+     * @param topology which cells are neighbours.
+     * @param seed the seed of the random number generator.
+     */
+    MineSweeperBoard(int rows, int cols, int numMines, MineSweeperTopology topology, long seed) {
+    	this(rows, cols, numMines, topology);
+    	placementRandom = new java.util.Random(seed);
+    }
+
+    /**
+     * pre: rows > 0 && cols > 0 && rows * cols <= MAX_CELLS &&
+     *      numMines >= 0 && numMines <= rows * cols; rnd != null
+     *
+     * Construct a new MineSweeperBoard with the specified size and
+     * number of mines, choosing the mine locations with the given
+     * random number generator. Boards with more than about a million
+     * cells use the compact storage, so even the largest boards need
+     * less than a byte per cell. Above about sixteen million cells only
+     * the mines are stored for every cell, and the rest is kept for the
+     * regions of the board that have been played.
+     *
+     * @param rows the number of rows on the board.
+     * @param cols the number of columns on the board.
+     * @param numMines the number of mines on the board.
+     * @param rnd the source of randomness used to place the mines.
+     */
+    public MineSweeperBoard(int rows, int cols, int numMines, java.util.Random rnd) {
+    	this(rows, cols, numMines, rnd, rows * cols > COMPACT_CELLS);
+    }
+
+    /**
+     * pre: rows > 0 && cols > 0 && rows * cols <= MAX_CELLS &&
+     *      numMines >= 0 && numMines <= rows * cols; rnd != null &&
+     *      topology != null
+     *
+     * Construct a new MineSweeperBoard of the specified size, number of
+     * mines and topology, choosing the mine locations with the given
+     * random number generator.
+     *
+     * @param rows the number of rows on the board.
+     * @param cols the number of columns on the board.
+     * @param numMines the number of mines on the board.
+     * @param rnd the source of randomness used to place the mines.
+     * @param topology which cells are neighbours.
+     */
+    public MineSweeperBoard(int rows, int cols, int numMines, java.util.Random rnd,
+    		MineSweeperTopology topology) {
+    	assert rows > 0 && cols > 0 && (long) rows * cols <= MAX_CELLS : "invalid board size";
+    	assert numMines >= 0 && numMines <= rows * cols : "invalid number of mines";
+    	assert rnd != null : "no random number generator";
+    	init(rows, cols, rows * cols > COMPACT_CELLS, topology);
+    	placeMines(numMines, rnd, -1, -1, -1);
+    }
+
+    /**
+     * pre: rows > 0 && cols > 0 && rows * cols <= MAX_CELLS &&
+     *      numMines >= 0 && numMines <= rows * cols; rnd != null
+     *
+     * Construct a new MineSweeperBoard with the specified size and
+     * number of mines, choosing how the cells are stored.
+     *
+     * @param rows the number of rows on the board.
+     * @param cols the number of columns on the board.
+     * @param numMines the number of mines on the board.
+     * @param rnd the source of randomness used to place the mines.
+     * @param compact true to use the compact bit-packed storage, or on
+     *        boards of more than SPARSE_CELLS cells the sparse storage.
+     */
+    MineSweeperBoard(int rows, int cols, int numMines, java.util.Random rnd,
+    		boolean compact) {
+    	assert rows > 0 && cols > 0 && (long) rows * cols <= MAX_CELLS : "invalid board size";
+    	assert numMines >= 0 && numMines <= rows * cols : "invalid number of mines";
+    	assert rnd != null : "no random number generator";
+    	init(rows, cols, compact, MineSweeperTopology.SQUARE);
+    	placeMines(numMines, rnd, -1, -1, -1);
+    }
+
+    /**
+     * pre: rows > 0 && cols > 0 && rows * cols <= MAX_CELLS &&
+     *      0 <= safeRow < rows && 0 <= safeCol < cols && numMines >= 0 &&
+     *      numMines + 1 + (the number of cells around safeRow, safeCol) <= rows * cols;
+     *      rnd != null
+     *
+     * Construct a new MineSweeperBoard with the specified size and
+     * number of mines, choosing the mine locations with the given
+     * random number generator but keeping the cell (safeRow, safeCol)
+     * and its neighbours free of mines.
+     *
+     * @param rows the number of rows on the board.
+     * @param cols the number of columns on the board.
+     * @param numMines the number of mines on the board.
+     * @param rnd the source of randomness used to place the mines.
+     * @param safeRow the row of the cell to keep free.
+     * @param safeCol the column of the cell to keep free.
+     */
+    MineSweeperBoard(int rows, int cols, int numMines, java.util.Random rnd,
+    		int safeRow, int safeCol) {
+    	assert rows > 0 && cols > 0 && (long) rows * cols <= MAX_CELLS : "invalid board size";
+    	assert safeRow >= 0 && safeRow < rows && safeCol >= 0 && safeCol < cols : "invalid safe cell";
+    	assert rnd != null : "no random number generator";
+    	init(rows, cols, rows * cols > COMPACT_CELLS, MineSweeperTopology.SQUARE);
+    	placeMines(numMines, rnd, safeRow, safeCol, 1);
+    }
+
+    /**
+     * pre: level == BEGINNER_LEVEL || level == INTERMEDIATE_LEVEL ||
+     *      level == EXPERT_LEVEL;
+     *
+     * Get the number of rows on a board for the specified level.
+     *
+     * @param level the level of play.
+     * @return the number of rows at that level.
+     */
+    public static int getLevelRows(int level) {
+    	assert level == BEGINNER_LEVEL || level == INTERMEDIATE_LEVEL ||
+    	       level == EXPERT_LEVEL: "Invalid level!";
+    	return LEVEL_ROWS[level];
+    }
+
+    /**
+     * pre: level == BEGINNER_LEVEL || level == INTERMEDIATE_LEVEL ||
+     *      level == EXPERT_LEVEL;
+     *
+     * Get the number of columns on a board for the specified level.
+     *
+     * @param level the level of play.
+     * @return the number of columns at that level.
+     */
+    public static int getLevelColumns(int level) {
+    	assert level == BEGINNER_LEVEL || level == INTERMEDIATE_LEVEL ||
+    	       level == EXPERT_LEVEL: "Invalid level!";
+    	return LEVEL_COLUMNS[level];
+    }
+
+    /**
+     * pre: level == BEGINNER_LEVEL || level == INTERMEDIATE_LEVEL ||
+     *      level == EXPERT_LEVEL;
+     *
+     * Get the number of mines on a board for the specified level.
+     *
+     * @param level the level of play.
+     * @return the number of mines at that level.
+     */
+    public static int getLevelMines(int level) {
     	assert level == BEGINNER_LEVEL || level == INTERMEDIATE_LEVEL ||
     	       level == EXPERT_LEVEL: "Invalid level!";
-    	java.util.Random rnd = new java.util.Random();
-    	if (level == BEGINNER_LEVEL){
-    		mineBoard = new int[5][10];
-        	for (int i = 0; i < mineBoard.length; i++){
-        		for (int j =0; j < mineBoard[0].length; j++){
-        			mineBoard[i][j] = COVERED_CELL;
-        		}
-        	}      
-        	while (getNumMines() < 3) {
-        		int row = rnd.nextInt(mineBoard.length);
-        		int column = rnd.nextInt(mineBoard[0].length);
-        		mineBoard[row][column] = MINE;
-        	}
-    	} else if (level == INTERMEDIATE_LEVEL){
-    		mineBoard = new int[10][15];
-        	for (int i = 0; i < mineBoard.length; i++){
-        		for (int j =0; j < mineBoard[0].length; j++){
-        			mineBoard[i][j] = COVERED_CELL;
-        		}
-        	}
-        	while (getNumMines() < 15) {
-        		int row = rnd.nextInt(mineBoard.length);
-        		int column = rnd.nextInt(mineBoard[0].length);
-        		mineBoard[row][column] = MINE;
-        	}
+    	return LEVEL_MINES[level];
+    }
+
+    /**
+     * pre: rows > 0 && cols > 0
+     *
+     * Construct a new MineSweeperBoard of the specified size in which
+     * every cell contains COVERED_CELL. Mines can then be placed with
+     * setCell. This is used by the tests and benchmarks.
+     *
+     * @param rows the number of rows on the board.
+     * @param cols the number of columns on the board.
+     */
+    MineSweeperBoard(int rows, int cols) {
+    	this(rows, cols, false);
+    }
+
+    /**
+     * pre: rows > 0 && cols > 0
+     *
+     * Construct a new MineSweeperBoard of the specified size in which
+     * every cell contains COVERED_CELL, choosing how the cells are stored.
+     * A compact board stores each cell in 7 bits rather than 5 bytes,
+     * at the cost of some bit twiddling on every access. Both kinds of
+     * board behave identically.
+     *
+     * @param rows the number of rows on the board.
+     * @param cols the number of columns on the board.
+     * @param compact true to use the compact bit-packed storage.
+     */
+    MineSweeperBoard(int rows, int cols, boolean compact) {
+    	init(rows, cols, compact, MineSweeperTopology.SQUARE);
+    }
+
+    /**
+     * pre: rows > 0 && cols > 0 && storage.size() == rows * cols;
+     *      counts holds the running counts of storage, as returned by
+     *      getCounts
+     *
+     * Construct a MineSweeperBoard around cells that have already been
+     * filled in, such as a saved game being restored.
+     *
+     * @param rows the number of rows on the board.
+     * @param cols the number of columns on the board.
+     * @param topology which cells are neighbours.
+     * @param storage the cells of the board.
+     * @param counts the running counts of the cells.
+     * @param rnd the source of randomness for mines not yet placed.
+     */
+    MineSweeperBoard(int rows, int cols, MineSweeperTopology topology, BoardStorage storage,
+    		int[] counts, java.util.Random rnd) {
+    	assert rows > 0 && cols > 0 && storage.size() == rows * cols : "invalid board size";
+    	this.rows = rows;
+    	this.cols = cols;
+    	this.topology = topology;
+    	neighbours = topology.table(rows, cols);
+    	mineBoard = storage;
+    	coveredCells = counts[0];
+    	unflaggedMines = counts[1];
+    	correctFlags = counts[2];
+    	wrongFlags = counts[3];
+    	uncoveredMines = counts[4];
+    	minesToPlace = counts[5];
+    	placementRandom = minesToPlace > 0 ? rnd : null;
+    }
+
+    /**
+     * Get the storage holding the cells of this board.
+     *
+     * @return the storage.
+     */
+    BoardStorage getStorage() {
+    	return mineBoard;
+    }
+
+    /**
+     * Get the running counts of this board: the covered cells, unflagged
+     * mines, correct flags, wrong flags, uncovered mines and mines still
+     * to be placed, in that order.
+     *
+     * @return a new array holding the counts.
+     */
+    int[] getCounts() {
+    	return new int[] {coveredCells, unflaggedMines, correctFlags, wrongFlags,
+    			  uncoveredMines, minesToPlace};
+    }
+
+    /**
+     * Make a copy of the cells and counts of this board. The copy has no
+     * listeners and shares nothing with this board.
+     *
+     * @param rnd the source of randomness for mines the copy has still
+     *        to place.
+     * @return the copy.
+     */
+    MineSweeperBoard copy(java.util.Random rnd) {
+    	return new MineSweeperBoard(rows, cols, topology, mineBoard.copy(), getCounts(), rnd);
+    }
+
+    /**
+     * pre: other.getRows() == getRows() && other.getColumns() == getColumns()
+     *
+     * Replace the cells and counts of this board with a copy of those of
+     * another board, such as a copy made earlier, and tell the listeners
+     * that the whole board has changed.
+     *
+     * @param other the board to copy.
+     * @param rnd the source of randomness for mines still to be placed.
+     */
+    void restore(MineSweeperBoard other, java.util.Random rnd) {
+    	assert other.rows == rows && other.cols == cols : "boards differ in size";
+    	mineBoard = other.mineBoard.copy();
+    	coveredCells = other.coveredCells;
+    	unflaggedMines = other.unflaggedMines;
+    	correctFlags = other.correctFlags;
+    	wrongFlags = other.wrongFlags;
+    	uncoveredMines = other.uncoveredMines;
+    	minesToPlace = other.minesToPlace;
+    	placementRandom = minesToPlace > 0 ? rnd : null;
+    	for (MineSweeperBoardListener l : listeners) {
+    		l.boardChanged(this);
+    	}
+    }
+
+    /**
+     * pre: numMines >= 0 && numMines <= getRows() * getColumns(); rnd != null
+     *
+     * Cover every cell of this board and take its mines away, to be
+     * placed on the next first click, and tell the listeners that the
+     * whole board has changed. The cells are kept in the same kind of
+     * storage as before.
+     *
+     * @param numMines the number of mines to place on the first click.
+     * @param rnd the source of randomness used to place them.
+     */
+    void reset(int numMines, java.util.Random rnd) {
+    	assert numMines >= 0 && numMines <= rows * cols : "invalid number of mines";
+    	assert rnd != null : "no random number generator";
+    	init(rows, cols, !(mineBoard instanceof IntBoardStorage), topology);
+    	unflaggedMines = 0;
+    	correctFlags = 0;
+    	wrongFlags = 0;
+    	uncoveredMines = 0;
+    	minesToPlace = numMines;
+    	placementRandom = rnd;
+    	for (MineSweeperBoardListener l : listeners) {
+    		l.boardChanged(this);
+    	}
+    }
+
+    /**
+     * pre: rows > 0 && cols > 0
+     *
+     * Set the size of this board and fill it with covered cells.
+     *
+     * @param rows the number of rows on the board.
+     * @param cols the number of columns on the board.
+     * @param compact true to use the compact bit-packed storage, or on
+     *        boards of more than SPARSE_CELLS cells the sparse storage.
+     */
+    private void init(int rows, int cols, boolean compact, MineSweeperTopology topology) {
+    	assert rows > 0 && cols > 0 : "invalid board size";
+    	assert topology != null : "no topology";
+    	this.rows = rows;
+    	this.cols = cols;
+    	this.topology = topology;
+    	neighbours = topology.table(rows, cols);
+    	if (compact && rows * cols > SPARSE_CELLS) {
+    		mineBoard = new SparseBoardStorage(rows * cols, neighbours);
+    	} else if (compact) {
+    		mineBoard = new PackedBoardStorage(rows * cols);
+    	} else {
+    		mineBoard = new IntBoardStorage(rows * cols);
+    	}
+    	coveredCells = rows * cols;
+    }
+
+    /**
+     * pre: the board contains no mines; 0 <= numMines <= the number of
+     *      cells that are not kept free
+     *
+     * Place exactly numMines mines on cells chosen uniformly at random,
+     * keeping the cell (safeRow, safeCol) and, if radius is 1, its
+     * neighbours free of mines. A flagged cell chosen for a mine becomes FLAGGED_MINE.
+     * When at most half of the board is mined, random cells are drawn
+     * until enough distinct cells have been mined, which takes O(numMines)
+     * expected draws. Denser boards use selection sampling, which makes
+     * one pass over the cells and never retries.
+     *
+     * On large boards the mines are first placed without touching the
+     * adjacent mine counts, and the counts are then worked out band by
+     * band in parallel. The mines are chosen in the same order either
+     * way, so a seed gives the same board.
+     *
+     * @param numMines the number of mines to place.
+     * @param rnd the source of randomness.
+     * @param safeRow the row of the cell to keep free.
+     * @param safeCol the column of the cell to keep free.
+     * @param radius 1 to keep the cell and its neighbours free, 0 to keep
+     *        only the cell free, or -1 to allow mines anywhere.
+     */
+    private void placeMines(int numMines, java.util.Random rnd,
+    		int safeRow, int safeCol, int radius) {
+    	long start = MineSweeperMetrics.start();
+    	int cells = mineBoard.size();
+    	int safe = radius >= 0 ? safeRow * cols + safeCol : -1;
+    	int[] around = radius > 0 ? neighbours.offsets(safe) : new int[0];
+    	int available = cells - (radius >= 0 ? 1 + around.length : 0);
+    	assert numMines >= 0 && numMines <= available : "invalid number of mines";
+    	boolean parallel = cells >= PARALLEL_CELLS;
+    	if (numMines <= available / 2) {
+    		int placed = 0;
+    		while (placed < numMines) {
+    			int index = rnd.nextInt(cells);
+    			if (!BoardStorage.isMine(mineBoard.get(index))
+    					&& !isKeptFree(index, safe, around)) {
+    				placeMine(index, parallel);
+    				placed++;
+    			}
+    		}
+    	} else {
+    		int needed = numMines;
+    		for (int index = 0; index < cells && needed > 0; index++) {
+    			if (isKeptFree(index, safe, around)) {
+    				continue;
+    			}
+    			if (rnd.nextInt(available) < needed) {
+    				placeMine(index, parallel);
+    				needed--;
+    			}
+    			available--;
+    		}
+    	}
+    	if (parallel && !mineBoard.countsAdjacent()) {
+    		ForkJoinPool.commonPool().invoke(new Band(0, cells, false));
+    	}
+    	MineSweeperMetrics.generated(start, rows, cols, numMines);
+    }
+
+    /**
+     * Determine if a cell is the safe cell or one of the neighbours
+     * kept free around it.
+     */
+    private static boolean isKeptFree(int index, int safe, int[] around) {
+    	if (index == safe) {
+    		return true;
+    	}
+    	for (int offset : around) {
+    		if (index == safe + offset) {
+    			return true;
+    		}
+    	}
+    	return false;
+    }
+
+    /**
+     * Put a mine in a covered or flagged cell. When deferCounts is true
+     * the adjacent mine counts are left for the caller to work out.
+     */
+    private void placeMine(int index, boolean deferCounts) {
+    	boolean flagged = mineBoard.get(index) == FLAG;
+    	if (!deferCounts) {
+    		put(index, flagged ? FLAGGED_MINE : MINE);
+    	} else if (flagged) {
+    		mineBoard.set(index, FLAGGED_MINE);
+    		wrongFlags--;
+    		correctFlags++;
     	} else {
-    		mineBoard = new int[15][20];
-        	for (int i = 0; i < mineBoard.length; i++){
-        		for (int j =0; j < mineBoard[0].length; j++){
-        			mineBoard[i][j] = COVERED_CELL;
-        		}
-        	}
-        	while (getNumMines() < 45) {
-        		int row = rnd.nextInt(mineBoard.length);
-        		int column = rnd.nextInt(mineBoard[0].length);
-        		mineBoard[row][column] = MINE;
-        	}
+    		mineBoard.set(index, MINE);
+    		coveredCells--;
+    		unflaggedMines++;
     	}
     }
 
+    /**
+     * Place the mines of a board that was made without them, keeping
+     * the given cell and, if there is room, its neighbours free.
+     *
+     * @param row the row of the cell to keep free, or -1 for none.
+     * @param col the column of the cell to keep free, or -1 for none.
+     */
+    private void placeDeferredMines(int row, int col) {
+    	int numMines = minesToPlace;
+    	int radius = -1;
+    	if (row >= 0) {
+    		int around = neighbours.offsets(row, col).length;
+    		radius = numMines + 1 + around <= rows * cols ? 1 : numMines < rows * cols ? 0 : -1;
+    	}
+    	minesToPlace = 0;
+    	placeMines(numMines, placementRandom, row, col, radius);
+    	placementRandom = null;
+    }
+
+    /**
+     * Get the topology of this board, which decides which cells are
+     * neighbours.
+     *
+     * @return the topology.
+     */
+    public MineSweeperTopology getTopology() {
+    	return topology;
+    }
+
     /**
      * Get the number of rows in this MineSweeperBoard.
      *
      * @return the number of rows in this MineSweeperBoard.
      */
     public int getRows() {
-        return mineBoard.length;
+        return rows;
     }
 
     /**
@@ -165,7 +723,7 @@ public class MineSweeperBoard {
      * @return the number of columns in this MineSweeperBoard.
      */
     public int getColumns() {
-        return mineBoard[0].length;
+        return cols;
     }
 
     /**
@@ -174,15 +732,7 @@ public class MineSweeperBoard {
      * @return the number of mines in this MineSweeperBoard.
      */
     public int getNumMines() {
-    	int count = 0;
-        for (int[] row: mineBoard){
-        	for (int column: row){
-        		if (column == MINE){
-        			count++;
-        		}
-        	}
-        }
-        return count;
+        return unflaggedMines + minesToPlace;
     }
 
     /**
@@ -199,11 +749,23 @@ public class MineSweeperBoard {
      *         or INVALID_CELL if the specified cell does not exist.
      */
     public int getCell(int row, int col) {  	
-    	if ((row <0 || row >= getRows()) || (col <0 || col >=getColumns())){
+    	return cellAt(row, col);
+    }
+
+    /**
+     * Get the contents of a cell, or INVALID_CELL if it does not exist.
+     * This is what getCell does; the board's own methods call this
+     * instead so that subclasses overriding getCell do not slow them down.
+     *
+     * @param row the row containing the cell.
+     * @param col the column containing the cell.
+     * @return the value contained in the cell.
+     */
+    private int cellAt(int row, int col) {
+    	if ((row <0 || row >= rows) || (col <0 || col >= cols)){
         	return INVALID_CELL;
         }
-    	return mineBoard[row][col];
-        
+    	return mineBoard.get(row * cols + col);
     }
 
     /**
@@ -217,37 +779,10 @@ public class MineSweeperBoard {
      *         return 0;
      */
     public int numAdjMines(int row, int col) {
-    	int count = 0;
-    	if (row < 0 || col < 0 || row >= getRows() || col >= getColumns()) {
-    		return count;
-    	} else {
-    		if (getCell(row,col+1) == MINE || getCell(row,col+1) == UNCOVERED_MINE || getCell(row,col+1) == FLAGGED_MINE) {
-    			count++;
-    		}
-    		if (getCell(row+1,col+1) == MINE || getCell(row+1,col+1) == UNCOVERED_MINE || getCell(row+1,col+1) == FLAGGED_MINE) {
-    			count++;
-    		}
-    		if (getCell(row-1,col+1) == MINE || getCell(row-1,col+1) == UNCOVERED_MINE || getCell(row-1,col+1) == FLAGGED_MINE) {
-    			count++;
-    		}
-    		if (getCell(row-1,col-1) == MINE || getCell(row-1,col-1) == UNCOVERED_MINE || getCell(row-1,col-1) == FLAGGED_MINE) {
-    			count++;
-    		}
-    		if (getCell(row+1,col-1) == MINE || getCell(row+1,col-1) == UNCOVERED_MINE || getCell(row+1,col-1) == FLAGGED_MINE) {
-    			count++;
-    		}
-    		if (getCell(row,col-1) == MINE || getCell(row,col-1) == UNCOVERED_MINE || getCell(row,col-1) == FLAGGED_MINE) {
-    			count++;
-    		}
-    		if (getCell(row+1,col) == MINE || getCell(row+1,col) == UNCOVERED_MINE || getCell(row+1,col) == FLAGGED_MINE) {
-    			count++;
-    		}
-    		if (getCell(row-1,col) == MINE || getCell(row-1,col) == UNCOVERED_MINE || getCell(row-1,col) == FLAGGED_MINE) {
-    			count++;
-    		}
+    	if (row < 0 || col < 0 || row >= rows || col >= cols) {
+    		return 0;
     	}
-    		
-    	return count;
+    	return mineBoard.getAdjacent(row * cols + col);
     }
 
     /**
@@ -259,26 +794,216 @@ public class MineSweeperBoard {
      * If the specified cell is already uncovered or is invalid, no change 
      * is made to the board.
      *
+     * If the uncovered cell has no adjacent mines, all of its neighbours
+     * are uncovered as well, and so on until the whole empty region and
+     * its numbered border are showing. On the square grid the region is
+     * opened a row span at a time, keeping only the starts of the spans
+     * still to open, so an open area of any size takes little memory
+     * beyond the board; the cells changed are kept as one run per span.
+     *
      * @param row the row of the cell to be uncovered.
-     * @param col the column of the cell to be uncovered. 
-     */
-    public void uncoverCell(int row, int col) {
-    	if (getCell(row,col) == COVERED_CELL){
-    		mineBoard[row][col] = numAdjMines(row,col);
-    		// super bonus part 
-    		if (getCell(row,col) == 0) {
-           		uncoverCell(row - 1 , col);
-           		uncoverCell(row +1, col);
-           		uncoverCell(row -1, col-1);
-           		uncoverCell(row +1, col -1);
-           		uncoverCell(row +1, col+1);
-           		uncoverCell(row -1, col +1);
-           		uncoverCell(row , col +1);
-           		uncoverCell(row , col -1);
-    		}
-    	} else if (getCell(row,col) == MINE){
-    		mineBoard[row][col] = UNCOVERED_MINE;
+     * @param col the column of the cell to be uncovered.
+     * @return the cells whose contents were changed, in the order they
+     *         were changed. The list is empty if no change was made.
+     */
+    public CellList uncoverCell(int row, int col) {
+    	long start = MineSweeperMetrics.start();
+    	CellList changed = new CellList(cols);
+    	int cell = cellAt(row,col);
+    	if (minesToPlace > 0 && cell == COVERED_CELL) {
+    		placeDeferredMines(row, col);
+    		cell = cellAt(row, col);
+    	}
+    	if (cell == MINE){
+    		put(row * cols + col, UNCOVERED_MINE);
+    		changed.add(row * cols + col);
+    	} else if (cell == COVERED_CELL){
+    		cascade(row * cols + col, changed);
        	}
+    	if (!changed.isEmpty()) {
+    		fireCellsChanged(changed);
+    	}
+    	MineSweeperMetrics.uncovered(start, row, col, changed.size());
+    	return changed;
+    }
+
+    /**
+     * pre: the start cell contains COVERED_CELL
+     *
+     * Uncover the specified cell and, if it has no adjacent mines,
+     * the connected region of empty cells around it.
+     *
+     * @param start the row-major index of the first cell.
+     * @param changed the list that receives every uncovered cell.
+     */
+    private void cascade(int start, CellList changed) {
+    	int adj = mineBoard.getAdjacent(start);
+    	put(start, adj);
+    	changed.add(start);
+    	if (adj != 0) {
+    		return;
+    	} else if (topology == MineSweeperTopology.SQUARE) {
+    		fillSpans(start, changed);
+    	} else {
+    		fillCells(start, changed);
+    	}
+    }
+
+    /**
+     * pre: the start cell has been uncovered and has no adjacent mines
+     *
+     * Open the empty region around a cell on the square grid by scan
+     * lines. Each span of empty cells along a row is uncovered from left
+     * to right, then the rows above and below it, one cell wider on each
+     * side, are scanned: their numbers are uncovered at once and the
+     * first cell of each run of empty cells is kept to be opened later.
+     * Only those starts are kept, so the work list stays near the
+     * height and width of the region rather than its area.
+     */
+    private void fillSpans(int start, CellList changed) {
+    	int[] seeds = new int[16];
+    	int top = 0;
+    	seeds[top++] = start;
+    	while (top > 0) {
+    		int seed = seeds[--top];
+    		int row = seed / cols;
+    		int rowStart = row * cols;
+    		if (seed != start && (mineBoard.get(seed) != COVERED_CELL
+    				|| mineBoard.getAdjacent(seed) != 0)) {
+    			continue;
+    		}
+    		int left = seed - rowStart;
+    		while (left > 0 && isEmptyCovered(rowStart + left - 1)) {
+    			left--;
+    		}
+    		int right = seed - rowStart;
+    		while (right < cols - 1 && isEmptyCovered(rowStart + right + 1)) {
+    			right++;
+    		}
+    		int from = Math.max(left - 1, 0);
+    		int to = Math.min(right + 1, cols - 1);
+    		for (int col = from; col <= to; col++) {
+    			int index = rowStart + col;
+    			if (mineBoard.get(index) == COVERED_CELL) {
+    				put(index, col < left || col > right ? mineBoard.getAdjacent(index) : 0);
+    				changed.add(index);
+    			}
+    		}
+    		for (int next = row - 1; next <= row + 1; next += 2) {
+    			if (next < 0 || next >= rows) {
+    				continue;
+    			}
+    			boolean inRun = false;
+    			for (int col = from; col <= to; col++) {
+    				int index = next * cols + col;
+    				if (mineBoard.get(index) != COVERED_CELL) {
+    					inRun = false;
+    					continue;
+    				}
+    				int count = mineBoard.getAdjacent(index);
+    				if (count != 0) {
+    					put(index, count);
+    					changed.add(index);
+    					inRun = false;
+    				} else if (!inRun) {
+    					if (top == seeds.length) {
+    						seeds = java.util.Arrays.copyOf(seeds, top * 2);
+    					}
+    					seeds[top++] = index;
+    					inRun = true;
+    				}
+    			}
+    		}
+    	}
+    }
+
+    private boolean isEmptyCovered(int index) {
+    	return mineBoard.get(index) == COVERED_CELL && mineBoard.getAdjacent(index) == 0;
+    }
+
+    /**
+     * pre: the start cell has been uncovered and has no adjacent mines
+     *
+     * Open the empty region around a cell on any grid, through the
+     * neighbour table, with an explicit work stack rather than
+     * recursion. Every cell is uncovered at the moment it is pushed, so
+     * no cell is pushed twice.
+     */
+    private void fillCells(int start, CellList changed) {
+    	int[] stack = new int[16];
+    	int top = 0;
+    	stack[top++] = start;
+    	while (top > 0) {
+    		int index = stack[--top];
+    		for (int offset : neighbours.offsets(index)) {
+    			int next = index + offset;
+    			if (mineBoard.get(next) == COVERED_CELL) {
+    				int adj = mineBoard.getAdjacent(next);
+    				put(next, adj);
+    				changed.add(next);
+    				if (adj == 0) {
+    					if (top == stack.length) {
+    						stack = java.util.Arrays.copyOf(stack, top * 2);
+    					}
+    					stack[top++] = next;
+    				}
+    			}
+    		}
+    	}
+    }
+
+    /**
+     * Uncover every covered neighbour of an uncovered number whose mines
+     * have all been flagged, as an experienced player does by clicking
+     * the number with both buttons. If the number of flags around the
+     * cell is not the cell's number, or the cell is not an uncovered
+     * number, no change is made. A wrong flag means a mine is uncovered
+     * and the game is lost, just as if each neighbour had been clicked.
+     *
+     * All of the neighbours are uncovered in one pass: the empty regions
+     * around them are opened by a single cascade that visits each cell
+     * once, and the listeners are told about every changed cell at once.
+     *
+     * @param row the row of the number.
+     * @param col the column of the number.
+     * @return the cells whose contents were changed, in the order they
+     *         were changed. The list is empty if no change was made.
+     */
+    public CellList chordCell(int row, int col) {
+    	long start = MineSweeperMetrics.start();
+    	CellList changed = new CellList(cols);
+    	int cell = cellAt(row, col);
+    	if (cell > 0 && cell == countFlags(row * cols + col)) {
+    		int index = row * cols + col;
+    		for (int offset : neighbours.offsets(index)) {
+    			int next = mineBoard.get(index + offset);
+    			if (next == MINE) {
+    				put(index + offset, UNCOVERED_MINE);
+    				changed.add(index + offset);
+    			} else if (next == COVERED_CELL) {
+    				cascade(index + offset, changed);
+    			}
+    		}
+    	}
+    	if (!changed.isEmpty()) {
+    		fireCellsChanged(changed);
+    	}
+    	MineSweeperMetrics.uncovered(start, row, col, changed.size());
+    	return changed;
+    }
+
+    /**
+     * Count the flags, right or wrong, around a cell.
+     */
+    private int countFlags(int index) {
+    	int flags = 0;
+    	for (int offset : neighbours.offsets(index)) {
+    		int cell = mineBoard.get(index + offset);
+    		if (cell == FLAG || cell == FLAGGED_MINE) {
+    			flags++;
+    		}
+    	}
+    	return flags;
     }
 
     /**
@@ -291,30 +1016,69 @@ public class MineSweeperBoard {
      * @param col the column of the cell to be flagged/unflagged.
      */
     public void flagCell(int row, int col) {
-    	if (getCell(row,col) == COVERED_CELL){
-    		mineBoard[row][col] = FLAG;
-    	} else if (getCell(row,col) == FLAG){
-    		mineBoard[row][col] = COVERED_CELL;
-    	} else if (getCell(row,col) == FLAGGED_MINE){
-    		mineBoard[row][col] = MINE;
-    	} else if (getCell(row, col) == MINE){
-    		mineBoard[row][col] = FLAGGED_MINE;
+    	long start = MineSweeperMetrics.start();
+    	int cell = cellAt(row,col);
+    	if (cell == COVERED_CELL){
+    		put(row * cols + col, FLAG);
+    	} else if (cell == FLAG){
+    		put(row * cols + col, COVERED_CELL);
+    	} else if (cell == FLAGGED_MINE){
+    		put(row * cols + col, MINE);
+    	} else if (cell == MINE){
+    		put(row * cols + col, FLAGGED_MINE);
+    	} else {
+    		return;
+    	}
+    	if (!listeners.isEmpty()) {
+    		CellList changed = new CellList(cols);
+    		changed.add(row * cols + col);
+    		fireCellsChanged(changed);
     	}
+    	MineSweeperMetrics.flagged(start, row, col);
     }
 
     /**
      * Uncover all of the cells on the board.
      */
     public void revealBoard() {
-    	for (int i = 0; i < mineBoard.length; i++){
-    		for (int j =0; j < mineBoard[0].length; j++){
-    			if (mineBoard[i][j] == COVERED_CELL || mineBoard[i][j] == FLAG) {
-    				mineBoard[i][j] = numAdjMines(i,j);
-    			} else if (mineBoard[i][j] == MINE || mineBoard[i][j] == FLAGGED_MINE){
-    				mineBoard[i][j] = UNCOVERED_MINE;
+    	if (minesToPlace > 0) {
+    		placeDeferredMines(-1, -1);
+    	}
+    	revealBoard(mineBoard.size() >= PARALLEL_CELLS);
+    }
+
+    /**
+     * Uncover all of the cells on the board, either one cell at a time
+     * or band by band in parallel. Both give the same board.
+     *
+     * @param parallel true to reveal the bands on the common ForkJoinPool.
+     */
+    void revealBoard(boolean parallel) {
+    	int cells = mineBoard.size();
+    	if (parallel) {
+    		// Every mine ends up uncovered and every other cell shows
+    		// its number, so the counts are known without keeping them
+    		// as each band goes.
+    		int mines = unflaggedMines + correctFlags + uncoveredMines;
+    		ForkJoinPool.commonPool().invoke(new Band(0, cells, true));
+    		coveredCells = 0;
+    		unflaggedMines = 0;
+    		correctFlags = 0;
+    		wrongFlags = 0;
+    		uncoveredMines = mines;
+    	} else {
+    		for (int i = 0; i < cells; i++){
+    			int cell = mineBoard.get(i);
+    			if (cell == COVERED_CELL || cell == FLAG) {
+    				put(i, mineBoard.getAdjacent(i));
+    			} else if (cell == MINE || cell == FLAGGED_MINE){
+    				put(i, UNCOVERED_MINE);
     			}
     		}
     	}
+    	for (MineSweeperBoardListener l : listeners) {
+    		l.boardChanged(this);
+    	}
     }
 
     /**
@@ -325,14 +1089,8 @@ public class MineSweeperBoard {
      *         otherwise.
      */
     public boolean gameLost() {
-    	for (int[] row: mineBoard){
-    		for (int col: row){
-    			if (col == UNCOVERED_MINE) {
-    				return true;
-    			}
-    		}
-    	}
-        return false;
+        MineSweeperMetrics.gameStateChecked();
+        return uncoveredMines > 0;
     }
     
     /**
@@ -348,23 +1106,12 @@ public class MineSweeperBoard {
      *         false otherwise.
      */
     public boolean gameWon() {
-    	for (int[] row: mineBoard){
-    		for (int col: row){
-    			if (col == FLAG) {
-    				return false;
-    			} else if (col == MINE) {
-    				return false;
-    			} else if (col == COVERED_CELL) {
-    				return false;
-    			} else if (gameLost()){
-    				return false;
-    			}
-    		}
-    	}
-        return true;
+        MineSweeperMetrics.gameStateChecked();
+        return unflaggedMines == 0 && wrongFlags == 0 && coveredCells == 0
+            && uncoveredMines == 0;
     }
     /**
-     * pre : numbRow < mineBoard.length && numbRow >=0 , numbCol < mineBoard[0].length && 
+     * pre : numbRow < getRows() && numbRow >=0 , numbCol < getColumns() && 
      *       numbCol >= 0, value >= -5 && value <=-1
      * set the value of the cell
      * @param numbRow the number of the row
@@ -372,11 +1119,201 @@ public class MineSweeperBoard {
      * @param value the value of the cell
      */
     public void setCell(int numbRow, int numbCol, int value) {
-    	assert numbRow < mineBoard.length && numbRow >=0 : "invalid Number of row";
-    	assert numbCol < mineBoard[0].length && numbCol >= 0 : "invalid number of column";
+    	assert numbRow < rows && numbRow >=0 : "invalid Number of row";
+    	assert numbCol < cols && numbCol >= 0 : "invalid number of column";
     	assert value >= -5 && value <=-1 : "invalid value!";
-    	mineBoard[numbRow][numbCol] = value;
+    	put(numbRow * cols + numbCol, value);
     }
 
-}
+    /**
+     * Register a listener to be told about changes to this board
+     * made by uncoverCell, chordCell, flagCell and revealBoard. A
+     * listener may be added from any thread, even during play, and is
+     * called on the thread that made the change.
+     *
+     * @param l the listener to add.
+     */
+    public void addBoardListener(MineSweeperBoardListener l) {
+    	listeners.add(l);
+    }
+
+    /**
+     * Stop telling a listener about changes to this board.
+     *
+     * @param l the listener to remove.
+     */
+    public void removeBoardListener(MineSweeperBoardListener l) {
+    	listeners.remove(l);
+    }
+
+    /**
+     * Tell every listener that some cells have changed.
+     *
+     * @param changed the cells that changed.
+     */
+    private void fireCellsChanged(CellList changed) {
+    	for (MineSweeperBoardListener l : listeners) {
+    		l.cellsChanged(this, changed);
+    	}
+    }
+
+    /**
+     * Store a value in the specified cell and update the running
+     * counts of covered, mined and flagged cells to match.
+     *
+     * @param index the row-major index of the cell.
+     * @param value the new contents of the cell.
+     */
+    private void put(int index, int value) {
+    	int old = mineBoard.get(index);
+    	mineBoard.set(index, value);
+    	recount(old, value);
+    	if (BoardStorage.isMine(old) != BoardStorage.isMine(value)) {
+    		int delta = BoardStorage.isMine(value) ? 1 : -1;
+    		for (int offset : neighbours.offsets(index)) {
+    			mineBoard.addAdjacent(index + offset, delta);
+    		}
+    	}
+    }
+
+    /**
+     * Update the running counts for a cell whose contents changed from
+     * old to value. A subclass that lets several threads change the
+     * board at once overrides this to make the whole update atomic, so
+     * that no state query sees the cell counted as neither or both.
+     *
+     * @param old the old contents of the cell.
+     * @param value the new contents of the cell.
+     */
+    void recount(int old, int value) {
+    	count(old, -1);
+    	count(value, 1);
+    }
+
+    /**
+     * Add delta to the running count for the given cell contents.
+     * Uncovered numbers are not counted.
+     *
+     * @param value the contents of a cell.
+     * @param delta the amount to add to the count.
+     */
+    private void count(int value, int delta) {
+    	switch (value) {
+    	case COVERED_CELL:   coveredCells += delta; break;
+    	case MINE:           unflaggedMines += delta; break;
+    	case FLAG:           wrongFlags += delta; break;
+    	case FLAGGED_MINE:   correctFlags += delta; break;
+    	case UNCOVERED_MINE: uncoveredMines += delta; break;
+    	default:             break;
+    	}
+    }
+
+    /**
+     * A run of cells that is either revealed or has its adjacent mine
+     * counts worked out from the mines around it. A band with more than
+     * BAND_CELLS cells is split in two at a multiple of 64 cells and the
+     * halves are done in parallel. A band only writes its own cells; it
+     * reads the mines around them, which no band changes.
+     */
+    private final class Band extends RecursiveAction {
+    	private static final long serialVersionUID = 1L;
 
+    	private final int from;
+    	private final int to;
+    	private final boolean reveal;
+
+    	Band(int from, int to, boolean reveal) {
+    		this.from = from;
+    		this.to = to;
+    		this.reveal = reveal;
+    	}
+
+    	protected void compute() {
+    		if (to - from <= BAND_CELLS) {
+    			if (reveal) {
+    				reveal();
+    			} else if (topology == MineSweeperTopology.SQUARE) {
+    				countAdjacent();
+    			} else {
+    				gatherAdjacent();
+    			}
+    		} else {
+    			int mid = from + ((to - from) / 2 & ~63);
+    			invokeAll(new Band(from, mid, reveal), new Band(mid, to, reveal));
+    		}
+    	}
+
+    	private void reveal() {
+    		for (int i = from; i < to; i++) {
+    			int cell = mineBoard.get(i);
+    			if (cell == COVERED_CELL || cell == FLAG) {
+    				mineBoard.set(i, mineBoard.getAdjacent(i));
+    			} else if (cell == MINE || cell == FLAGGED_MINE) {
+    				mineBoard.set(i, UNCOVERED_MINE);
+    			}
+    		}
+    	}
+
+    	/**
+    	 * pre: the cells in this band have no adjacent mines counted yet
+    	 *
+    	 * Count the mines around each cell. Moving along a row, the
+    	 * three columns around the next cell are the last two columns
+    	 * around this one plus one new column, so each cell looks at
+    	 * only three new cells rather than eight.
+    	 */
+    	private void countAdjacent() {
+    		int row = from / cols;
+    		int col = from % cols;
+    		int i = from;
+    		while (i < to) {
+    			int end = Math.min(to, (row + 1) * cols);
+    			int left = col > 0 ? minesInColumn(row, col - 1) : 0;
+    			int here = minesInColumn(row, col);
+    			for (; i < end; i++, col++) {
+    				int right = col + 1 < cols ? minesInColumn(row, col + 1) : 0;
+    				int self = BoardStorage.isMine(mineBoard.get(i)) ? 1 : 0;
+    				mineBoard.addAdjacent(i, left + here + right - self);
+    				left = here;
+    				here = right;
+    			}
+    			row++;
+    			col = 0;
+    		}
+    	}
+
+    	/**
+    	 * pre: the cells in this band have no adjacent mines counted yet
+    	 *
+    	 * Count the mines around each cell by looking at each of its
+    	 * neighbours, for topologies other than the plain square grid.
+    	 */
+    	private void gatherAdjacent() {
+    		for (int i = from; i < to; i++) {
+    			int count = 0;
+    			for (int offset : neighbours.offsets(i)) {
+    				if (BoardStorage.isMine(mineBoard.get(i + offset))) {
+    					count++;
+    				}
+    			}
+    			mineBoard.addAdjacent(i, count);
+    		}
+    	}
+
+    	/**
+    	 * Count the mines in a column in the given row and the rows
+    	 * above and below it.
+    	 */
+    	private int minesInColumn(int row, int col) {
+    		int count = 0;
+    		int lastRow = Math.min(row + 1, rows - 1);
+    		for (int r = Math.max(row - 1, 0); r <= lastRow; r++) {
+    			if (BoardStorage.isMine(mineBoard.get(r * cols + col))) {
+    				count++;
+    			}
+    		}
+    		return count;
+    	}
+    }
+
+}
@@ -0,0 +1,557 @@
+package comp132.minesweeper;
+
+import java.util.Iterator;
+
+/**
+ * A MineSweeperBoardAnalyzer measures how much work a board is to clear.
+ * Its main measure is the board's 3BV (Bechtel's Board Benchmark Value),
+ * the smallest number of clicks that uncover every safe cell: one for
+ * each opening, that is each connected area of cells with no adjacent
+ * mines together with the numbers around it, plus one for each isolated
+ * number, a number that is not next to an opening.
+ *
+ * Along with the 3BV an Analysis holds the number and sizes of the
+ * openings, the number of isolated numbers and how many safe cells show
+ * each number from 0 to 8, which is how densely the mines are packed
+ * around the cells a player sees.
+ *
+ * Everything is worked out in one pass over the rows of the board by a
+ * Scan, which is given the mines one row at a time and keeps only the
+ * last few rows. Openings are found with a union-find over the runs of
+ * empty cells in each row: a run joins every run above it that it
+ * touches, and an opening is finished, and its size known, as soon as
+ * a row has no run that belongs to it. A Scan therefore needs memory in
+ * proportion to the width of the board, not its area, so a board can be
+ * measured as it is made or read, without ever being held in memory.
+ *
+ * An analyzer looks at where the mines are, so it should be used on a
+ * board before it is played. It keeps its working arrays between boards
+ * and is not thread-safe; use one per thread.
+ */
+public class MineSweeperBoardAnalyzer {
+
+	private Scan scan;
+	private boolean[] row = new boolean[0];
+
+	/**
+	 * pre: board != null && board.getTopology() == MineSweeperTopology.SQUARE
+	 *
+	 * Get the 3BV of a board.
+	 *
+	 * @param board the board to measure.
+	 * @return the number of clicks needed to clear the board.
+	 */
+	public int threeBV(MineSweeperBoard board) {
+		return (int) analyze(board).getThreeBV();
+	}
+
+	/**
+	 * pre: board != null && board.getTopology() == MineSweeperTopology.SQUARE
+	 *
+	 * Measure a board in one pass over its cells.
+	 *
+	 * @param board the board to measure.
+	 * @return the measurements.
+	 */
+	public Analysis analyze(MineSweeperBoard board) {
+		assert board != null : "no board";
+		assert board.getTopology() == MineSweeperTopology.SQUARE : "square boards only";
+		int rows = board.getRows();
+		int cols = board.getColumns();
+		if (scan == null || scan.cols != cols) {
+			scan = new Scan(cols);
+			row = new boolean[cols];
+		} else {
+			scan.reset();
+		}
+		BoardStorage storage = board.getStorage();
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
+				row[c] = BoardStorage.isMine(storage.get(r * cols + c));
+			}
+			scan.addRow(row);
+		}
+		return scan.finish();
+	}
+
+	/**
+	 * pre: every board is square
+	 *
+	 * Measure a series of boards, such as those coming from a
+	 * MineSweeperGenerator, one at a time. Each board can be forgotten
+	 * as soon as the next one is asked for, so any number of boards can
+	 * be measured in the memory of one.
+	 *
+	 * @param boards the boards to measure.
+	 * @return the sum of the measurements of all of the boards.
+	 */
+	public Analysis analyzeAll(Iterator<MineSweeperBoard> boards) {
+		Analysis total = new Analysis();
+		while (boards.hasNext()) {
+			total.add(analyze(boards.next()));
+		}
+		return total;
+	}
+
+	/**
+	 * The measurements of one board, or the sum of those of many.
+	 */
+	public static class Analysis {
+		private long boards;
+		private long cells;
+		private long mines;
+		private long openings;
+		private long isolatedNumbers;
+		private long largestOpening;
+		private final long[] openingSizes = new long[32];
+		private final long[] numbers = new long[9];
+
+		Analysis() {
+		}
+
+		void add(Analysis other) {
+			boards += other.boards;
+			cells += other.cells;
+			mines += other.mines;
+			openings += other.openings;
+			isolatedNumbers += other.isolatedNumbers;
+			largestOpening = Math.max(largestOpening, other.largestOpening);
+			for (int i = 0; i < openingSizes.length; i++) {
+				openingSizes[i] += other.openingSizes[i];
+			}
+			for (int i = 0; i < numbers.length; i++) {
+				numbers[i] += other.numbers[i];
+			}
+		}
+
+		public long getBoards() {
+			return boards;
+		}
+
+		public long getCells() {
+			return cells;
+		}
+
+		public long getMines() {
+			return mines;
+		}
+
+		/**
+		 * Get the smallest number of clicks that clear the board: one
+		 * for each opening and one for each isolated number.
+		 *
+		 * @return the 3BV.
+		 */
+		public long getThreeBV() {
+			return openings + isolatedNumbers;
+		}
+
+		/**
+		 * Get the number of openings, the connected areas of cells with
+		 * no adjacent mines, each of which one click uncovers.
+		 *
+		 * @return the number of openings.
+		 */
+		public long getOpenings() {
+			return openings;
+		}
+
+		/**
+		 * Get the number of numbered cells that are not next to an
+		 * opening, and so must each be clicked on their own.
+		 *
+		 * @return the number of isolated numbers.
+		 */
+		public long getIsolatedNumbers() {
+			return isolatedNumbers;
+		}
+
+		/**
+		 * Get the number of cells in the largest opening. The size of an
+		 * opening is the number of its cells with no adjacent mines; the
+		 * numbers around it are not counted, since a number can border
+		 * several openings.
+		 *
+		 * @return the size of the largest opening, or 0 if there is none.
+		 */
+		public long getLargestOpening() {
+			return largestOpening;
+		}
+
+		/**
+		 * Get the histogram of the sizes of the openings. Entry b counts
+		 * the openings of at least 2^b and fewer than 2^(b+1) cells.
+		 *
+		 * @return a copy of the histogram.
+		 */
+		public long[] getOpeningSizeHistogram() {
+			return openingSizes.clone();
+		}
+
+		/**
+		 * Get how many safe cells have each number of adjacent mines.
+		 * Entry n counts the safe cells with n mines around them, so
+		 * entry 0 counts the cells of the openings.
+		 *
+		 * @return a copy of the nine counts.
+		 */
+		public long[] getNumberCounts() {
+			return numbers.clone();
+		}
+
+		/**
+		 * Get the mean number of mines around a safe cell.
+		 *
+		 * @return the mean, from 0 to 8.
+		 */
+		public double getMeanNumber() {
+			long safe = 0;
+			long total = 0;
+			for (int n = 0; n < numbers.length; n++) {
+				safe += numbers[n];
+				total += n * numbers[n];
+			}
+			return safe == 0 ? 0 : (double) total / safe;
+		}
+
+		/**
+		 * Note a finished opening.
+		 */
+		void opening(long size) {
+			openings++;
+			largestOpening = Math.max(largestOpening, size);
+			openingSizes[63 - Long.numberOfLeadingZeros(size)]++;
+		}
+
+		public String toString() {
+			StringBuilder text = new StringBuilder();
+			text.append(String.format("%d boards, %d cells, %d mines, 3BV %d%n",
+						  boards, cells, mines, getThreeBV()));
+			text.append(String.format("%d openings, largest %d, %d isolated numbers%n",
+						  openings, largestOpening, isolatedNumbers));
+			text.append("opening sizes:");
+			for (int b = 0; b < openingSizes.length; b++) {
+				if (openingSizes[b] > 0) {
+					text.append(" ").append(1L << b).append("+:").append(openingSizes[b]);
+				}
+			}
+			text.append(String.format("%nnumbers:"));
+			for (int n = 0; n < numbers.length; n++) {
+				text.append(" ").append(n).append(":").append(numbers[n]);
+			}
+			return text.toString();
+		}
+	}
+
+	/**
+	 * A Scan measures a square board given its mines one row at a time,
+	 * from the top. The numbers of a row are worked out once the row
+	 * below it is known, and whether the numbers of a row are isolated
+	 * once the row below that is known, so the Scan keeps three rows of
+	 * mines and three of cells, plus the runs of empty cells in the last
+	 * row it has numbered and the openings they belong to.
+	 */
+	public static class Scan {
+		private final int cols;
+
+		// The mines of the last three rows given, the newest last.
+		// Rows off the board have no mines.
+		private boolean[] minesAbove;
+		private boolean[] minesHere;
+		private boolean[] minesBelow;
+
+		// The cells of the last three rows numbered, the newest last:
+		// -1 for a mine, otherwise the number of adjacent mines. Rows
+		// off the board are offBoard, all mines, so never empty.
+		private byte[] cellsAbove;
+		private byte[] cellsHere;
+		private byte[] cellsBelow;
+		private final byte[] offBoard;
+
+		// The mines in each column of three rows, for counting.
+		private final int[] columnMines;
+
+		// The runs of empty cells in the last row numbered and in the
+		// one above it: first column, last column and opening.
+		private int[] runStart;
+		private int[] runEnd;
+		private int[] runOpening;
+		private int runs;
+		private int[] aboveStart;
+		private int[] aboveEnd;
+		private int[] aboveOpening;
+		private int aboveRuns;
+
+		// The union-find of the openings still growing. An opening is a
+		// number that is reused once the opening is finished, so there
+		// are never more than there are runs in two rows.
+		private final int[] parent;
+		private final long[] size;
+		private final int[] mark;
+		private final int[] free;
+		private int freeCount;
+		private int stamp;
+
+		private int rowsGiven;
+		private Analysis analysis;
+
+		/**
+		 * pre: cols > 0
+		 *
+		 * Construct a Scan of a board with the given number of columns.
+		 *
+		 * @param cols the number of columns on the board.
+		 */
+		public Scan(int cols) {
+			assert cols > 0 : "invalid number of columns";
+			this.cols = cols;
+			minesAbove = new boolean[cols];
+			minesHere = new boolean[cols];
+			minesBelow = new boolean[cols];
+			offBoard = new byte[cols];
+			java.util.Arrays.fill(offBoard, (byte) -1);
+			columnMines = new int[cols + 2];
+			int maxRuns = (cols + 1) / 2;
+			runStart = new int[maxRuns];
+			runEnd = new int[maxRuns];
+			runOpening = new int[maxRuns];
+			aboveStart = new int[maxRuns];
+			aboveEnd = new int[maxRuns];
+			aboveOpening = new int[maxRuns];
+			parent = new int[2 * maxRuns];
+			size = new long[2 * maxRuns];
+			mark = new int[2 * maxRuns];
+			free = new int[2 * maxRuns];
+			reset();
+		}
+
+		/**
+		 * Forget the board being scanned, ready to scan another of the
+		 * same width.
+		 */
+		public void reset() {
+			freeCount = 0;
+			for (int i = parent.length - 1; i >= 0; i--) {
+				free[freeCount++] = i;
+			}
+			java.util.Arrays.fill(mark, 0);
+			stamp = 0;
+			runs = 0;
+			rowsGiven = 0;
+			java.util.Arrays.fill(minesAbove, false);
+			java.util.Arrays.fill(minesHere, false);
+			java.util.Arrays.fill(minesBelow, false);
+			cellsAbove = offBoard;
+			cellsHere = offBoard;
+			cellsBelow = offBoard;
+			analysis = new Analysis();
+			analysis.boards = 1;
+		}
+
+		/**
+		 * pre: mines.length >= the number of columns
+		 *
+		 * Give the mines of the next row of the board. The array is
+		 * copied, so it may be reused for the next row.
+		 *
+		 * @param mines true for each column of the row that holds a mine.
+		 */
+		public void addRow(boolean[] mines) {
+			assert mines.length >= cols : "row too short";
+			boolean[] oldest = minesAbove;
+			minesAbove = minesHere;
+			minesHere = minesBelow;
+			minesBelow = oldest;
+			System.arraycopy(mines, 0, minesBelow, 0, cols);
+			if (rowsGiven > 0) {
+				numberRow();
+			}
+			rowsGiven++;
+		}
+
+		/**
+		 * pre: at least one row has been given
+		 *
+		 * Finish the board and get its measurements. The Scan must be
+		 * reset before it is given another board.
+		 *
+		 * @return the measurements.
+		 */
+		public Analysis finish() {
+			assert rowsGiven > 0 : "no rows";
+			boolean[] oldest = minesAbove;
+			minesAbove = minesHere;
+			minesHere = minesBelow;
+			minesBelow = oldest;
+			java.util.Arrays.fill(minesBelow, false);
+			numberRow();
+			isolate(cellsHere, cellsBelow, offBoard);
+			for (int i = 0; i < runs; i++) {
+				int opening = find(runOpening[i]);
+				if (mark[opening] != stamp + 1) {
+					mark[opening] = stamp + 1;
+					analysis.opening(size[opening]);
+				}
+			}
+			analysis.cells = (long) rowsGiven * cols;
+			return analysis;
+		}
+
+		/**
+		 * Work out the numbers of the middle row of mines, count them,
+		 * join its empty runs to the openings above and decide which
+		 * numbers of the row above it are isolated.
+		 */
+		private void numberRow() {
+			byte[] oldest = cellsAbove;
+			cellsAbove = cellsHere;
+			cellsHere = cellsBelow;
+			cellsBelow = oldest == offBoard ? new byte[cols] : oldest;
+			byte[] cells = cellsBelow;
+			// Moving along the row, the mines around the next cell are
+			// those of the last two columns around this one plus one
+			// new column, as in MineSweeperBoard's parallel count.
+			for (int c = 0; c < cols; c++) {
+				columnMines[c + 1] = (minesAbove[c] ? 1 : 0) + (minesHere[c] ? 1 : 0)
+					+ (minesBelow[c] ? 1 : 0);
+			}
+			for (int c = 0; c < cols; c++) {
+				if (minesHere[c]) {
+					cells[c] = -1;
+					analysis.mines++;
+				} else {
+					int count = columnMines[c] + columnMines[c + 1] + columnMines[c + 2];
+					cells[c] = (byte) count;
+					analysis.numbers[count]++;
+				}
+			}
+			joinRuns(cells);
+			if (cellsHere != offBoard) {
+				isolate(cellsAbove, cellsHere, cells);
+			}
+		}
+
+		/**
+		 * Count the isolated numbers of the middle of three rows of cells.
+		 */
+		private void isolate(byte[] above, byte[] middle, byte[] below) {
+			for (int c = 0; c < cols; c++) {
+				if (middle[c] > 0 && !touchesEmpty(above, c) && !touchesEmpty(middle, c)
+				    && !touchesEmpty(below, c)) {
+					analysis.isolatedNumbers++;
+				}
+			}
+		}
+
+		/**
+		 * Determine if a column of a row of cells, or a column either
+		 * side of it, holds an empty cell.
+		 */
+		private boolean touchesEmpty(byte[] cells, int col) {
+			return cells[col] == 0 || (col > 0 && cells[col - 1] == 0)
+				|| (col + 1 < cols && cells[col + 1] == 0);
+		}
+
+		/**
+		 * Find the runs of empty cells in a newly numbered row and join
+		 * each to the openings of the runs above it that it touches,
+		 * diagonally included. Then every opening that no run of this
+		 * row belongs to is finished.
+		 */
+		private void joinRuns(byte[] cells) {
+			int[] swap = aboveStart;
+			aboveStart = runStart;
+			runStart = swap;
+			swap = aboveEnd;
+			aboveEnd = runEnd;
+			runEnd = swap;
+			swap = aboveOpening;
+			aboveOpening = runOpening;
+			runOpening = swap;
+			aboveRuns = runs;
+			runs = 0;
+
+			int above = 0;
+			for (int c = 0; c < cols; ) {
+				if (cells[c] != 0) {
+					c++;
+					continue;
+				}
+				int start = c;
+				while (c < cols && cells[c] == 0) {
+					c++;
+				}
+				int end = c - 1;
+				while (above < aboveRuns && aboveEnd[above] < start - 1) {
+					above++;
+				}
+				int opening = -1;
+				for (int a = above; a < aboveRuns && aboveStart[a] <= end + 1; a++) {
+					int other = find(aboveOpening[a]);
+					if (opening < 0) {
+						opening = other;
+					} else if (other != opening) {
+						opening = union(opening, other);
+					}
+				}
+				if (opening < 0) {
+					opening = free[--freeCount];
+					parent[opening] = opening;
+					size[opening] = 0;
+				}
+				size[opening] += end - start + 1;
+				runStart[runs] = start;
+				runEnd[runs] = end;
+				runOpening[runs] = opening;
+				runs++;
+			}
+
+			// Openings of this row are marked live; those of the row above
+			// that are not are finished, and their numbers can be reused.
+			stamp += 2;
+			for (int i = 0; i < runs; i++) {
+				runOpening[i] = find(runOpening[i]);
+				mark[runOpening[i]] = stamp;
+			}
+			for (int a = 0; a < aboveRuns; a++) {
+				int opening = aboveOpening[a];
+				if (mark[opening] >= stamp) {
+					continue;
+				}
+				mark[opening] = stamp + 1;
+				if (find(opening) == opening) {
+					analysis.opening(size[opening]);
+				}
+				free[freeCount++] = opening;
+			}
+		}
+
+		private int find(int opening) {
+			int root = opening;
+			while (parent[root] != root) {
+				root = parent[root];
+			}
+			while (parent[opening] != root) {
+				int next = parent[opening];
+				parent[opening] = root;
+				opening = next;
+			}
+			return root;
+		}
+
+		/**
+		 * Join two openings, the smaller into the larger, and get the
+		 * one that is left.
+		 */
+		private int union(int a, int b) {
+			if (size[a] < size[b]) {
+				int swap = a;
+				a = b;
+				b = swap;
+			}
+			parent[b] = a;
+			size[a] += size[b];
+			return a;
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package comp132.minesweeper;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class MineSweeperBoardAnalyzerTest {
+
+	/**
+	 * Measure a board the slow way, by flood-filling each opening, into
+	 * {openings, isolated numbers, largest opening, empty cells}.
+	 */
+	private static long[] floodFill(MineSweeperBoard board) {
+		int rows = board.getRows();
+		int cols = board.getColumns();
+		boolean[] reached = new boolean[rows * cols];
+		int[] stack = new int[rows * cols];
+		long[] result = new long[4];
+		for (int i = 0; i < rows * cols; i++) {
+			if (reached[i] || !isEmpty(board, i / cols, i % cols)) {
+				continue;
+			}
+			int size = 0;
+			int top = 0;
+			stack[top++] = i;
+			reached[i] = true;
+			while (top > 0) {
+				int index = stack[--top];
+				size++;
+				for (int r = index / cols - 1; r <= index / cols + 1; r++) {
+					for (int c = index % cols - 1; c <= index % cols + 1; c++) {
+						if (r >= 0 && r < rows && c >= 0 && c < cols && !reached[r * cols + c]
+						    && isEmpty(board, r, c)) {
+							reached[r * cols + c] = true;
+							stack[top++] = r * cols + c;
+						}
+					}
+				}
+			}
+			result[0]++;
+			result[2] = Math.max(result[2], size);
+			result[3] += size;
+		}
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
+				if (board.getCell(r, c) == MineSweeperBoard.MINE || isEmpty(board, r, c)) {
+					continue;
+				}
+				boolean isolated = true;
+				for (int nr = r - 1; nr <= r + 1; nr++) {
+					for (int nc = c - 1; nc <= c + 1; nc++) {
+						if (nr >= 0 && nr < rows && nc >= 0 && nc < cols && isEmpty(board, nr, nc)) {
+							isolated = false;
+						}
+					}
+				}
+				if (isolated) {
+					result[1]++;
+				}
+			}
+		}
+		return result;
+	}
+
+	private static boolean isEmpty(MineSweeperBoard board, int row, int col) {
+		return board.getCell(row, col) != MineSweeperBoard.MINE && board.numAdjMines(row, col) == 0;
+	}
+
+	@Test
+	public void testMatchesFloodFill() {
+		MineSweeperBoardAnalyzer analyzer = new MineSweeperBoardAnalyzer();
+		Random rnd = new Random(21);
+		for (int i = 0; i < 300; i++) {
+			int rows = 1 + rnd.nextInt(i % 3 == 0 ? 3 : 40);
+			int cols = 1 + rnd.nextInt(i % 5 == 0 ? 3 : 40);
+			int mines = rnd.nextInt(rows * cols * 3 / 10 + 1);
+			MineSweeperBoard board = new MineSweeperBoard(rows, cols, mines, rnd);
+			long[] expected = floodFill(board);
+			MineSweeperBoardAnalyzer.Analysis analysis = analyzer.analyze(board);
+			Assert.assertEquals(expected[0], analysis.getOpenings());
+			Assert.assertEquals(expected[1], analysis.getIsolatedNumbers());
+			Assert.assertEquals(expected[2], analysis.getLargestOpening());
+			Assert.assertEquals(expected[3], analysis.getNumberCounts()[0]);
+			Assert.assertEquals(mines, analysis.getMines());
+			Assert.assertEquals(expected[0] + expected[1], analyzer.threeBV(board));
+			long safe = 0;
+			for (long count : analysis.getNumberCounts()) {
+				safe += count;
+			}
+			Assert.assertEquals(rows * cols - mines, safe);
+			long openings = 0;
+			for (long count : analysis.getOpeningSizeHistogram()) {
+				openings += count;
+			}
+			Assert.assertEquals(expected[0], openings);
+		}
+	}
+
+	@Test
+	public void testOpeningsJoinBelow() {
+		// Two openings that only meet at the bottom of a U are one.
+		MineSweeperBoard board = new MineSweeperBoard(7, 7);
+		for (int r = 0; r < 4; r++) {
+			board.setCell(r, 3, MineSweeperBoard.MINE);
+		}
+		MineSweeperBoardAnalyzer.Analysis analysis = new MineSweeperBoardAnalyzer().analyze(board);
+		Assert.assertEquals(1, analysis.getOpenings());
+		Assert.assertEquals(0, analysis.getIsolatedNumbers());
+		// Columns 2 and 4 of rows 0 to 4 and (4, 3) are numbers.
+		Assert.assertEquals(49 - 4 - 11, analysis.getLargestOpening());
+	}
+
+	@Test
+	public void testAnalyzeGeneratedBoards() {
+		final MineSweeperGenerator generator = new MineSweeperGenerator(new Random(3));
+		MineSweeperBoardAnalyzer analyzer = new MineSweeperBoardAnalyzer();
+		final long[] threeBV = new long[1];
+		MineSweeperBoardAnalyzer.Analysis total = analyzer.analyzeAll(new Iterator<MineSweeperBoard>() {
+			private int made;
+
+			public boolean hasNext() {
+				return made < 20;
+			}
+
+			public MineSweeperBoard next() {
+				made++;
+				MineSweeperBoard board = generator.generate(MineSweeperBoard.EXPERT_LEVEL);
+				long[] expected = floodFill(board);
+				threeBV[0] += expected[0] + expected[1];
+				return board;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		});
+		Assert.assertEquals(20, total.getBoards());
+		Assert.assertEquals(20 * 45, total.getMines());
+		Assert.assertEquals(threeBV[0], total.getThreeBV());
+	}
+}
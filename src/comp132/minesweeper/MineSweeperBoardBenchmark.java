@@ -0,0 +1,317 @@
+package comp132.minesweeper;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks of the MineSweeperBoard hot paths, on every
+ * combination of board size and mine density. Run them through the
+ * benchmark profile of the Maven build:
+ * <pre>
+ * mvn -B -Pbenchmark verify
+ * mvn -B -Pbenchmark verify -Djmh.args="MineSweeperBoardBenchmark.reveal
+ *      -p size=4000x4000 -p density=0.05 -rf json -rff results.json"
+ * </pre>
+ * JMH writes one JSON record per measurement with -rf json, so that
+ * runs from different releases can be compared.
+ *
+ * The uncover and reveal benchmarks play a fresh copy of the board for
+ * every invocation, made outside the timed part. uncoverNumbers
+ * uncovers NUMBERED_CELLS cells that each open only themselves and is
+ * reported per cell; uncoverCascade opens the region around one empty
+ * cell.
+ *
+ * Boards large enough to be revealed in parallel are also revealed one
+ * cell at a time, as revealSequential, for comparison. revealLegacy
+ * repeats the work revealBoard did before the board kept adjacent mine
+ * counts, recounting the neighbours of every cell through getCell.
+ *
+ * The concurrentMove benchmarks have every JMH thread make random flag
+ * and uncover moves on one shared ConcurrentMineSweeperBoard, with 1 to
+ * 64 threads. The board is made afresh for every iteration, and a move
+ * that would uncover a mine flags it instead, so the game is still
+ * being played when the iteration is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MineSweeperBoardBenchmark {
+
+	static final int NUMBERED_CELLS = 256;
+	private static final long SEED = 132;
+
+	/**
+	 * A board of each size and density, with mines placed at random
+	 * from a fixed seed so that every run measures the same board, and
+	 * the cells the uncover benchmarks start from.
+	 */
+	@State(Scope.Benchmark)
+	public static class Board {
+		@Param({"100x100", "1000x1000", "4000x4000"})
+		public String size;
+
+		@Param({"0.05", "0.15", "0.3"})
+		public double density;
+
+		int rows;
+		int cols;
+		int mines;
+		MineSweeperBoard board;
+		int[] numbered;
+		int empty;
+
+		@Setup(Level.Trial)
+		public void make() {
+			String[] rc = size.split("x");
+			rows = Integer.parseInt(rc[0]);
+			cols = Integer.parseInt(rc[1]);
+			mines = (int) (rows * cols * density);
+			board = new MineSweeperBoard(rows, cols, mines, new Random(SEED));
+			numbered = new int[NUMBERED_CELLS];
+			int found = 0;
+			empty = -1;
+			for (int i = 0; i < rows * cols; i++) {
+				if (board.getCell(i / cols, i % cols) != MineSweeperBoard.COVERED_CELL) {
+					continue;
+				} else if (board.numAdjMines(i / cols, i % cols) > 0) {
+					if (found < NUMBERED_CELLS) {
+						numbered[found++] = i;
+					}
+				} else if (empty < 0) {
+					empty = i;
+				}
+			}
+			if (found < NUMBERED_CELLS || empty < 0) {
+				throw new IllegalStateException("no cells to uncover on " + size + " at " + density);
+			}
+		}
+	}
+
+	/**
+	 * A copy of the board for a benchmark that changes it, made afresh
+	 * before every invocation.
+	 */
+	@State(Scope.Thread)
+	public static class Fresh {
+		MineSweeperBoard board;
+
+		@Setup(Level.Invocation)
+		public void copy(Board from) {
+			board = from.board.copy(new Random(SEED));
+		}
+	}
+
+	@Benchmark
+	public int construct(Board b) {
+		return new MineSweeperBoard(b.rows, b.cols, b.mines, new Random(SEED)).getNumMines();
+	}
+
+	@Benchmark
+	public long numAdjMines(Board b) {
+		long sum = 0;
+		for (int r = 0; r < b.rows; r++) {
+			for (int c = 0; c < b.cols; c++) {
+				sum += b.board.numAdjMines(r, c);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Flag and unflag every cell, leaving the board as it was.
+	 */
+	@Benchmark
+	public MineSweeperBoard flagCell(Board b) {
+		for (int pass = 0; pass < 2; pass++) {
+			for (int r = 0; r < b.rows; r++) {
+				for (int c = 0; c < b.cols; c++) {
+					b.board.flagCell(r, c);
+				}
+			}
+		}
+		return b.board;
+	}
+
+	@Benchmark
+	public boolean gameWon(Board b) {
+		return b.board.gameWon();
+	}
+
+	@Benchmark
+	public boolean gameLost(Board b) {
+		return b.board.gameLost();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBERED_CELLS)
+	public void uncoverNumbers(Board b, Fresh fresh, Blackhole hole) {
+		for (int cell : b.numbered) {
+			hole.consume(fresh.board.uncoverCell(cell / b.cols, cell % b.cols));
+		}
+	}
+
+	@Benchmark
+	public CellList uncoverCascade(Board b, Fresh fresh) {
+		return fresh.board.uncoverCell(b.empty / b.cols, b.empty % b.cols);
+	}
+
+	@Benchmark
+	public MineSweeperBoard reveal(Fresh fresh) {
+		fresh.board.revealBoard();
+		return fresh.board;
+	}
+
+	@Benchmark
+	public MineSweeperBoard revealSequential(Fresh fresh) {
+		fresh.board.revealBoard(false);
+		return fresh.board;
+	}
+
+	@Benchmark
+	public long revealLegacy(Fresh fresh) {
+		return legacyReveal(fresh.board);
+	}
+
+	/**
+	 * Construct a board at each level of play.
+	 */
+	@State(Scope.Thread)
+	public static class Levels {
+		@Param({"1", "2", "3"})
+		public int level;
+
+		Random rnd = new Random(SEED);
+	}
+
+	@Benchmark
+	public int constructLevel(Levels levels) {
+		return new MineSweeperBoard(levels.level, levels.rnd).getNumMines();
+	}
+
+	/**
+	 * A board shared by every thread of a run, made afresh for every
+	 * iteration, and the moves of one thread: mostly flags, with one
+	 * uncover in sixteen.
+	 */
+	@State(Scope.Benchmark)
+	public static class SharedBoard {
+		ConcurrentMineSweeperBoard board;
+
+		@Setup(Level.Iteration)
+		public void make() {
+			board = new ConcurrentMineSweeperBoard(1000, 1000, 200000, new Random(SEED));
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Moves {
+		final Random rnd = new Random();
+		int moves;
+	}
+
+	@Benchmark
+	@Threads(1)
+	public int concurrentMove1(SharedBoard shared, Moves moves) {
+		return move(shared.board, moves);
+	}
+
+	@Benchmark
+	@Threads(2)
+	public int concurrentMove2(SharedBoard shared, Moves moves) {
+		return move(shared.board, moves);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public int concurrentMove4(SharedBoard shared, Moves moves) {
+		return move(shared.board, moves);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public int concurrentMove8(SharedBoard shared, Moves moves) {
+		return move(shared.board, moves);
+	}
+
+	@Benchmark
+	@Threads(16)
+	public int concurrentMove16(SharedBoard shared, Moves moves) {
+		return move(shared.board, moves);
+	}
+
+	@Benchmark
+	@Threads(32)
+	public int concurrentMove32(SharedBoard shared, Moves moves) {
+		return move(shared.board, moves);
+	}
+
+	@Benchmark
+	@Threads(64)
+	public int concurrentMove64(SharedBoard shared, Moves moves) {
+		return move(shared.board, moves);
+	}
+
+	/**
+	 * Make one random move on the shared board, flagging a covered mine
+	 * rather than uncovering it so that the game is never lost.
+	 *
+	 * @return the number of cells the move changed, when it uncovers.
+	 */
+	private static int move(ConcurrentMineSweeperBoard board, Moves moves) {
+		int r = moves.rnd.nextInt(1000);
+		int c = moves.rnd.nextInt(1000);
+		int cell = board.getCell(r, c);
+		if ((moves.moves++ & 15) == 0 && cell != MineSweeperBoard.MINE
+				&& cell != MineSweeperBoard.FLAGGED_MINE) {
+			return board.uncoverCell(r, c).size();
+		}
+		board.flagCell(r, c);
+		return 0;
+	}
+
+	/**
+	 * Do the work revealBoard used to do: a scan of the board with
+	 * every covered cell counting its neighbours through getCell.
+	 *
+	 * @return the sum of the counts, so the JIT cannot discard them.
+	 */
+	private static long legacyReveal(MineSweeperBoard board) {
+		long sum = 0;
+		for (int r = 0; r < board.getRows(); r++) {
+			for (int c = 0; c < board.getColumns(); c++) {
+				int cell = board.getCell(r, c);
+				if (cell == MineSweeperBoard.COVERED_CELL || cell == MineSweeperBoard.FLAG) {
+					for (int nr = r - 1; nr <= r + 1; nr++) {
+						for (int nc = c - 1; nc <= c + 1; nc++) {
+							int n = board.getCell(nr, nc);
+							if ((nr != r || nc != c) && (n == MineSweeperBoard.MINE
+									|| n == MineSweeperBoard.FLAGGED_MINE
+									|| n == MineSweeperBoard.UNCOVERED_MINE)) {
+								sum++;
+							}
+						}
+					}
+				}
+			}
+		}
+		return sum;
+	}
+}
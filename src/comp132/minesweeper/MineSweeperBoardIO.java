@@ -0,0 +1,350 @@
+package comp132.minesweeper;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/**
+ * MineSweeperBoardIO saves games to and restores them from a compact
+ * binary format. A saved game holds the whole state of the board, the
+ * seed the board was made from and the time played so far. All values
+ * are big-endian:
+ * <pre>
+ * offset  size  contents
+ * 0       4     MAGIC ("MSWB")
+ * 4       4     VERSION
+ * 8       4     rows
+ * 12      4     columns
+ * 16      8     seed
+ * 24      8     elapsed time in milliseconds
+ * 32      24    covered cells, unflagged mines, correct flags,
+ *               wrong flags, uncovered mines and mines not yet placed
+ * 56      4     topology id, 0 for the square grid
+ * 60      4     reserved, 0
+ * 64      8w    mined bitset, w = (cells + 63) / 64 longs
+ *         8w    flagged bitset
+ *         8w    uncovered bitset
+ *         c     adjacent mine counts, c = (cells + 1) / 2 bytes
+ * </pre>
+ * Cell i is bit i % 64 of long i / 64 in each bitset, and its count is
+ * the low 4 bits of byte i / 2 when i is even and the high 4 bits when
+ * it is odd. That is about 7 bits a cell, the same as the compact board
+ * storage, so a saved game can be played straight from the file with
+ * map.
+ */
+public class MineSweeperBoardIO {
+
+	/**
+	 * The first four bytes of every saved game.
+	 */
+	public static final int MAGIC = 0x4D535742;
+
+	/**
+	 * The version of the format written by this class.
+	 */
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 64;
+
+	/**
+	 * A game read back from a file.
+	 */
+	public static class SavedGame {
+		private final MineSweeperBoard board;
+		private final long seed;
+		private final long elapsedTime;
+
+		SavedGame(MineSweeperBoard board, long seed, long elapsedTime) {
+			this.board = board;
+			this.seed = seed;
+			this.elapsedTime = elapsedTime;
+		}
+
+		public MineSweeperBoard getBoard() {
+			return board;
+		}
+
+		public long getSeed() {
+			return seed;
+		}
+
+		/**
+		 * Get the time played before the game was saved.
+		 *
+		 * @return the elapsed time in milliseconds.
+		 */
+		public long getElapsedTime() {
+			return elapsedTime;
+		}
+	}
+
+	/**
+	 * Save a game to a file.
+	 *
+	 * @param board the board to save.
+	 * @param seed the seed the board was made from.
+	 * @param elapsedTime the time played so far in milliseconds.
+	 * @param file the file to write.
+	 */
+	public static void save(MineSweeperBoard board, long seed, long elapsedTime, File file)
+			throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			write(board, seed, elapsedTime, out);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write a game to a stream. The cells are written straight from the
+	 * board's storage, so no copy of the board is made. The stream is
+	 * flushed but not closed.
+	 *
+	 * @param board the board to save.
+	 * @param seed the seed the board was made from.
+	 * @param elapsedTime the time played so far in milliseconds.
+	 * @param stream the stream to write to.
+	 */
+	public static void write(MineSweeperBoard board, long seed, long elapsedTime,
+			OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+		BoardStorage storage = board.getStorage();
+		int cells = storage.size();
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(board.getRows());
+		out.writeInt(board.getColumns());
+		out.writeLong(seed);
+		out.writeLong(elapsedTime);
+		for (int count : board.getCounts()) {
+			out.writeInt(count);
+		}
+		out.writeInt(board.getTopology().getId());
+		out.writeInt(0);
+
+		storage.writeCells(out);
+		out.flush();
+	}
+
+	/**
+	 * Read a saved game onto the heap. The board uses the same kind of
+	 * storage a new board of its size would: ints, packed bits or, above
+	 * MineSweeperBoard.SPARSE_CELLS cells, the sparse storage.
+	 *
+	 * @param file the file to read.
+	 * @return the saved game.
+	 * @throws IOException if the file cannot be read or is not a saved
+	 *         game of a version this class can read.
+	 */
+	public static SavedGame load(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(channel, header);
+			header.flip();
+			int[] shape = readHeader(header, channel.size());
+			int rows = shape[0];
+			int cols = shape[1];
+			int cells = rows * cols;
+			int words = (cells + 63) >>> 6;
+
+			long[] mined = new long[words];
+			long[] flagged = new long[words];
+			long[] uncovered = new long[words];
+			ByteBuffer chunk = ByteBuffer.allocateDirect(1 << 16);
+			readLongs(channel, chunk, mined);
+			readLongs(channel, chunk, flagged);
+			readLongs(channel, chunk, uncovered);
+			byte[] adjacent = new byte[(cells + 1) >>> 1];
+			readFully(channel, ByteBuffer.wrap(adjacent));
+
+			BoardStorage storage = new PackedBoardStorage(cells, mined, flagged, uncovered,
+								      adjacent);
+			return makeGame(header, rows, cols, settle(storage, rows, cols, header));
+		}
+		finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Read a saved game from a stream onto the heap, as load does. Only
+	 * the bytes of the game are read, so the stream can go on to hold
+	 * other data, and it is not closed.
+	 *
+	 * @param stream the stream to read from.
+	 * @return the saved game.
+	 * @throws IOException if the stream cannot be read or does not hold
+	 *         a saved game of a version this class can read.
+	 */
+	public static SavedGame read(InputStream stream) throws IOException {
+		DataInputStream in = new DataInputStream(stream);
+		byte[] bytes = new byte[HEADER_SIZE];
+		in.readFully(bytes);
+		ByteBuffer header = ByteBuffer.wrap(bytes);
+		// The length of a stream is not known; a short one fails below.
+		int[] shape = readHeader(header, Long.MAX_VALUE);
+		int rows = shape[0];
+		int cols = shape[1];
+		int cells = rows * cols;
+		int words = (cells + 63) >>> 6;
+
+		long[][] bits = new long[3][words];
+		byte[] chunk = new byte[1 << 16];
+		for (long[] bitset : bits) {
+			int done = 0;
+			while (done < words) {
+				int count = Math.min(chunk.length / 8, words - done);
+				in.readFully(chunk, 0, 8 * count);
+				ByteBuffer.wrap(chunk, 0, 8 * count).asLongBuffer().get(bitset, done, count);
+				done += count;
+			}
+		}
+		byte[] adjacent = new byte[(cells + 1) >>> 1];
+		in.readFully(adjacent);
+
+		BoardStorage storage = new PackedBoardStorage(cells, bits[0], bits[1], bits[2],
+							      adjacent);
+		return makeGame(header, rows, cols, settle(storage, rows, cols, header));
+	}
+
+	/**
+	 * Map a saved game into memory and play it from there. The mapping
+	 * is private: moves made on the board change only the pages they
+	 * touch, in memory, and never the file. Use save to keep them.
+	 *
+	 * @param file the file to map.
+	 * @return the saved game.
+	 * @throws IOException if the file cannot be read or is not a saved
+	 *         game of a version this class can read.
+	 */
+	public static SavedGame map(File file) throws IOException {
+		// A private mapping needs a channel that could write, even
+		// though nothing is written to the file.
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.PRIVATE, 0, channel.size());
+			int[] shape = readHeader(buffer, channel.size());
+			int rows = shape[0];
+			int cols = shape[1];
+			BoardStorage storage = new MappedBoardStorage(rows * cols, buffer, HEADER_SIZE);
+			return makeGame(buffer, rows, cols, storage);
+		}
+		finally {
+			// The mapping stays valid after the channel is closed.
+			raf.close();
+		}
+	}
+
+	/**
+	 * Check the header at the start of a buffer.
+	 *
+	 * @return the rows and columns of the board.
+	 */
+	private static int[] readHeader(ByteBuffer header, long fileSize) throws IOException {
+		if (header.getInt(0) != MAGIC) {
+			throw new IOException("not a saved Mine Sweeper game");
+		}
+		if (header.getInt(4) != VERSION) {
+			throw new IOException("unsupported saved game version " + header.getInt(4));
+		}
+		int rows = header.getInt(8);
+		int cols = header.getInt(12);
+		if (rows <= 0 || cols <= 0 || (long) rows * cols > MineSweeperBoard.MAX_CELLS) {
+			throw new IOException("invalid board size " + rows + "x" + cols);
+		}
+		if (MineSweeperTopology.forId(header.getInt(56)) == null) {
+			throw new IOException("unknown topology " + header.getInt(56));
+		}
+		long cells = (long) rows * cols;
+		if (fileSize < HEADER_SIZE + 3 * 8 * ((cells + 63) >>> 6) + ((cells + 1) >>> 1)) {
+			throw new EOFException("saved game is truncated");
+		}
+		return new int[] {rows, cols};
+	}
+
+	private static SavedGame makeGame(ByteBuffer header, int rows, int cols,
+			BoardStorage storage) {
+		long seed = header.getLong(16);
+		int[] counts = new int[6];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = header.getInt(32 + 4 * i);
+		}
+		MineSweeperTopology topology = MineSweeperTopology.forId(header.getInt(56));
+		MineSweeperBoard board = new MineSweeperBoard(rows, cols, topology, storage, counts,
+							      new Random(seed));
+		return new SavedGame(board, seed, header.getLong(24));
+	}
+
+	/**
+	 * Move cells read onto the heap into the kind of storage a new board
+	 * of their size would use: ints for small boards, the sparse storage
+	 * for the largest, and the packed cells as they are otherwise.
+	 */
+	private static BoardStorage settle(BoardStorage packed, int rows, int cols,
+			ByteBuffer header) {
+		int cells = rows * cols;
+		if (cells <= MineSweeperBoard.COMPACT_CELLS) {
+			return unpack(packed);
+		} else if (cells <= MineSweeperBoard.SPARSE_CELLS) {
+			return packed;
+		}
+		MineSweeperTopology topology = MineSweeperTopology.forId(header.getInt(56));
+		BoardStorage storage = new SparseBoardStorage(cells, topology.table(rows, cols));
+		for (int i = 0; i < cells; i++) {
+			int value = packed.get(i);
+			// Setting a covered cell would change nothing.
+			if (value != MineSweeperBoard.COVERED_CELL) {
+				storage.set(i, value);
+			}
+		}
+		return storage;
+	}
+
+	/**
+	 * Copy the cells of a storage into the faster int storage.
+	 */
+	private static BoardStorage unpack(BoardStorage packed) {
+		BoardStorage storage = new IntBoardStorage(packed.size());
+		for (int i = 0; i < packed.size(); i++) {
+			storage.set(i, packed.get(i));
+			storage.addAdjacent(i, packed.getAdjacent(i));
+		}
+		return storage;
+	}
+
+	private static void readLongs(FileChannel channel, ByteBuffer chunk, long[] words)
+			throws IOException {
+		int done = 0;
+		while (done < words.length) {
+			chunk.clear();
+			chunk.limit(Math.min(chunk.capacity(), 8 * (words.length - done)));
+			readFully(channel, chunk);
+			chunk.flip();
+			chunk.asLongBuffer().get(words, done, chunk.remaining() / 8);
+			done += chunk.remaining() / 8;
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new EOFException("saved game is truncated");
+			}
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package comp132.minesweeper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class MineSweeperBoardIOTest {
+
+	private static void play(MineSweeperBoard board, long seed) {
+		Random rnd = new Random(seed);
+		for (int i = 0; i < 50; i++) {
+			int r = rnd.nextInt(board.getRows());
+			int c = rnd.nextInt(board.getColumns());
+			if (board.getCell(r, c) == MineSweeperBoard.MINE) {
+				board.flagCell(r, c);
+			} else {
+				board.uncoverCell(r, c);
+			}
+		}
+	}
+
+	private static void assertSameBoard(MineSweeperBoard expected, MineSweeperBoard actual) {
+		Assert.assertEquals(expected.getRows(), actual.getRows());
+		Assert.assertEquals(expected.getColumns(), actual.getColumns());
+		for (int r = 0; r < expected.getRows(); r++) {
+			for (int c = 0; c < expected.getColumns(); c++) {
+				Assert.assertEquals(expected.getCell(r, c), actual.getCell(r, c));
+				Assert.assertEquals(expected.numAdjMines(r, c), actual.numAdjMines(r, c));
+			}
+		}
+		Assert.assertEquals(expected.getNumMines(), actual.getNumMines());
+		Assert.assertEquals(expected.gameWon(), actual.gameWon());
+		Assert.assertEquals(expected.gameLost(), actual.gameLost());
+	}
+
+	@Test
+	public void testSaveAndLoad() throws IOException {
+		MineSweeperBoard board = new MineSweeperBoard(40, 30, 150, new Random(3));
+		play(board, 4);
+		File file = File.createTempFile("minesweeper", ".msw");
+		file.deleteOnExit();
+		MineSweeperBoardIO.save(board, 3, 12345, file);
+		Assert.assertEquals(64 + 3 * 8 * 19 + 600, file.length());
+
+		MineSweeperBoardIO.SavedGame game = MineSweeperBoardIO.load(file);
+		Assert.assertEquals(3, game.getSeed());
+		Assert.assertEquals(12345, game.getElapsedTime());
+		assertSameBoard(board, game.getBoard());
+		play(board, 5);
+		play(game.getBoard(), 5);
+		assertSameBoard(board, game.getBoard());
+	}
+
+	@Test
+	public void testMapCompactBoard() throws IOException {
+		// A lazy board whose mines have not been placed is saved too.
+		MineSweeperBoard lazy = new MineSweeperBoard(1100, 1000, 100000);
+		lazy.flagCell(0, 0);
+		MineSweeperBoard board = new MineSweeperBoard(1100, 1000, 100000, new Random(8));
+		play(board, 9);
+		File file = File.createTempFile("minesweeper", ".msw");
+		file.deleteOnExit();
+		MineSweeperBoardIO.save(board, 8, 0, file);
+		long length = file.length();
+
+		MineSweeperBoardIO.SavedGame game = MineSweeperBoardIO.map(file);
+		assertSameBoard(board, game.getBoard());
+		play(board, 10);
+		play(game.getBoard(), 10);
+		assertSameBoard(board, game.getBoard());
+		// The moves on the mapped board did not change the file.
+		Assert.assertEquals(length, file.length());
+		MineSweeperBoard saved = new MineSweeperBoard(1100, 1000, 100000, new Random(8));
+		play(saved, 9);
+		assertSameBoard(saved, MineSweeperBoardIO.load(file).getBoard());
+
+		MineSweeperBoardIO.save(lazy, 11, 0, file);
+		MineSweeperBoard restored = MineSweeperBoardIO.load(file).getBoard();
+		Assert.assertEquals(100000, restored.getNumMines());
+		Assert.assertEquals(MineSweeperBoard.FLAG, restored.getCell(0, 0));
+		restored.uncoverCell(500, 500);
+		Assert.assertFalse(restored.gameLost());
+		Assert.assertEquals(100000, restored.getNumMines()
+				+ (restored.getCell(0, 0) == MineSweeperBoard.FLAGGED_MINE ? 1 : 0));
+	}
+
+	@Test
+	public void testLoadSparseBoard() throws IOException {
+		MineSweeperBoard board = new MineSweeperBoard(4200, 4000, 1500000, new Random(12));
+		play(board, 13);
+		File file = File.createTempFile("minesweeper", ".msw");
+		file.deleteOnExit();
+		MineSweeperBoardIO.save(board, 12, 0, file);
+
+		MineSweeperBoard loaded = MineSweeperBoardIO.load(file).getBoard();
+		Assert.assertTrue(loaded.getStorage() instanceof SparseBoardStorage);
+		Random rnd = new Random(14);
+		for (int i = 0; i < 100000; i++) {
+			int r = rnd.nextInt(4200);
+			int c = rnd.nextInt(4000);
+			Assert.assertEquals(board.getCell(r, c), loaded.getCell(r, c));
+			Assert.assertEquals(board.numAdjMines(r, c), loaded.numAdjMines(r, c));
+		}
+		Assert.assertEquals(board.getNumMines(), loaded.getNumMines());
+		Assert.assertEquals(((SparseBoardStorage) board.getStorage()).getTiles(),
+				    ((SparseBoardStorage) loaded.getStorage()).getTiles());
+	}
+}
@@ -0,0 +1,25 @@
+package comp132.minesweeper;
+
+/**
+ * A MineSweeperBoardListener is told when the contents of cells on a
+ * MineSweeperBoard change, so that a view of the board only needs to
+ * update the cells that actually changed.
+ */
+public interface MineSweeperBoardListener {
+
+	/**
+	 * Called after an operation has changed some cells of the board.
+	 *
+	 * @param board the board that changed.
+	 * @param changed the cells that changed, in the order they changed.
+	 */
+	void cellsChanged(MineSweeperBoard board, CellList changed);
+
+	/**
+	 * Called after an operation has changed the whole board at once,
+	 * such as revealBoard.
+	 *
+	 * @param board the board that changed.
+	 */
+	void boardChanged(MineSweeperBoard board);
+}
@@ -0,0 +1,141 @@
+package comp132.minesweeper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A MineSweeperBoardPool keeps boards for each level of play ready to
+ * be played, so that starting a game does not wait for a board to be
+ * generated. Every board comes from a MineSweeperGenerator and can be
+ * cleared without guessing; the cell in the middle of the board has
+ * already been uncovered, so the player starts from the opening the
+ * board was checked from.
+ *
+ * A background thread, started with the pool, fills it and refills it
+ * whenever a board is taken. If the pool for a level is ever empty, as
+ * when boards are taken faster than they can be generated, the caller
+ * is not kept waiting for a board to be generated: it gets a plain
+ * MineSweeperBoard instead, which places its mines on the first click,
+ * away from the clicked cell, while the filler catches up.
+ */
+public class MineSweeperBoardPool {
+
+	private final List<BlockingQueue<MineSweeperBoard>> boards =
+		new ArrayList<BlockingQueue<MineSweeperBoard>>();
+	private final MineSweeperGenerator generator = new MineSweeperGenerator(new Random());
+	private final Thread filler;
+
+	/**
+	 * pre: boardsPerLevel > 0
+	 *
+	 * Construct a pool and start filling it in the background.
+	 *
+	 * @param boardsPerLevel the number of boards to keep for each level.
+	 */
+	public MineSweeperBoardPool(int boardsPerLevel) {
+		assert boardsPerLevel > 0 : "invalid pool size";
+		for (int level = 0; level <= MineSweeperBoard.EXPERT_LEVEL; level++) {
+			boards.add(new ArrayBlockingQueue<MineSweeperBoard>(boardsPerLevel));
+		}
+		filler = new Thread(new Runnable() {
+			public void run() {
+				fill();
+			}
+		}, "MineSweeperBoardPool");
+		filler.setDaemon(true);
+		filler.setPriority(Thread.MIN_PRIORITY);
+		filler.start();
+	}
+
+	/**
+	 * pre: level == BEGINNER_LEVEL || level == INTERMEDIATE_LEVEL ||
+	 *      level == EXPERT_LEVEL
+	 *
+	 * Take a board for a level of play out of the pool.
+	 *
+	 * @param level the level of play.
+	 * @param seed the seed of the mines of the board handed back if the
+	 *        pool is empty, as by MineSweeperBoard(rows, cols, numMines,
+	 *        topology, seed).
+	 * @return a board that can be cleared without guessing, with the
+	 *         cell in the middle already uncovered, or, if there is none
+	 *         ready, a board whose mines are placed on the first click.
+	 */
+	public MineSweeperBoard take(int level, long seed) {
+		MineSweeperBoard board = boards.get(level).poll();
+		synchronized (this) {
+			notifyAll();
+		}
+		if (board == null) {
+			board = new MineSweeperBoard(MineSweeperBoard.getLevelRows(level),
+						     MineSweeperBoard.getLevelColumns(level),
+						     MineSweeperBoard.getLevelMines(level),
+						     MineSweeperTopology.SQUARE, seed);
+		}
+		return board;
+	}
+
+	/**
+	 * Stop filling the pool, waiting for the board being made, if any.
+	 * Boards already in the pool can still be taken, but none are made
+	 * to replace them.
+	 *
+	 * @throws InterruptedException if the caller is interrupted while
+	 *         waiting.
+	 */
+	public void close() throws InterruptedException {
+		filler.interrupt();
+		filler.join();
+	}
+
+	/**
+	 * Make boards for every level until the pool is full, then wait for
+	 * a board to be taken.
+	 */
+	private void fill() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				boolean full = true;
+				for (int level = MineSweeperBoard.BEGINNER_LEVEL;
+				     level <= MineSweeperBoard.EXPERT_LEVEL; level++) {
+					if (boards.get(level).remainingCapacity() > 0) {
+						boards.get(level).offer(makeBoard(level));
+						full = false;
+					}
+				}
+				if (full) {
+					synchronized (this) {
+						while (isFull()) {
+							wait();
+						}
+					}
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			// The pool is no longer being filled.
+		}
+	}
+
+	private boolean isFull() {
+		for (int level = MineSweeperBoard.BEGINNER_LEVEL;
+		     level <= MineSweeperBoard.EXPERT_LEVEL; level++) {
+			if (boards.get(level).remainingCapacity() > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Generate a board and uncover the cell in the middle.
+	 */
+	private MineSweeperBoard makeBoard(int level) {
+		MineSweeperBoard board = generator.generate(level);
+		board.uncoverCell(board.getRows() / 2, board.getColumns() / 2);
+		return board;
+	}
+}
@@ -40,6 +40,121 @@ public class MineSweeperBoardTest {
 		Assert.assertEquals(45, mineBoard.getNumMines());
 	}
 	@Test
+	public void testConstructorCustom(){
+		MineSweeperBoard mineBoard = new MineSweeperBoard(7, 9, 60);
+		Assert.assertEquals(7, mineBoard.getRows());
+		Assert.assertEquals(9, mineBoard.getColumns());
+		Assert.assertEquals(60, mineBoard.getNumMines());
+	}
+	@Test
+	public void testUncoverCellHugeOpening(){
+		MineSweeperBoard mineBoard = new MineSweeperBoard(2000, 2000, 0);
+		Assert.assertEquals(4000000, mineBoard.uncoverCell(1000, 1000).size());
+		Assert.assertEquals(0, mineBoard.getCell(1999, 0));
+		Assert.assertTrue(mineBoard.gameWon());
+	}
+	@Test
+	public void testUncoverCellGiantOpening(){
+		// Sparse storage; the cascade keeps only span starts and one run
+		// of changed cells per row, so this fits in a small heap.
+		MineSweeperBoard mineBoard = new MineSweeperBoard(10000, 10000, 0);
+		CellList changed = mineBoard.uncoverCell(5000, 5000);
+		Assert.assertEquals(100000000, changed.size());
+		Assert.assertTrue(changed.getRuns() <= 10000);
+		Assert.assertEquals(5000, changed.getRow(0));
+		Assert.assertEquals(5000, changed.getCol(0));
+		Assert.assertTrue(mineBoard.gameWon());
+	}
+	@Test
+	public void testUncoverCellCascadeMatchesFloodFill(){
+		java.util.Random rnd = new java.util.Random(132);
+		for (int game = 0; game < 200; game++) {
+			int rows = 1 + rnd.nextInt(30);
+			int cols = 1 + rnd.nextInt(30);
+			int mines = rnd.nextInt(rows * cols / 6 + 1);
+			MineSweeperBoard mineBoard = new MineSweeperBoard(rows, cols, mines, new java.util.Random(game));
+			int row = rnd.nextInt(rows);
+			int col = rnd.nextInt(cols);
+			if (mineBoard.getCell(row, col) != MineSweeperBoard.COVERED_CELL) {
+				continue;
+			}
+			boolean[] open = new boolean[rows * cols];
+			int[] stack = new int[rows * cols];
+			int top = 0;
+			int expected = 1;
+			open[row * cols + col] = true;
+			stack[top++] = row * cols + col;
+			while (top > 0) {
+				int cell = stack[--top];
+				if (mineBoard.numAdjMines(cell / cols, cell % cols) != 0) {
+					continue;
+				}
+				for (int r = cell / cols - 1; r <= cell / cols + 1; r++) {
+					for (int c = cell % cols - 1; c <= cell % cols + 1; c++) {
+						if (r >= 0 && r < rows && c >= 0 && c < cols && !open[r * cols + c]) {
+							open[r * cols + c] = true;
+							stack[top++] = r * cols + c;
+							expected++;
+						}
+					}
+				}
+			}
+			CellList changed = mineBoard.uncoverCell(row, col);
+			Assert.assertEquals(expected, changed.size());
+			for (int i = 0; i < changed.size(); i++) {
+				Assert.assertTrue(open[changed.getRow(i) * cols + changed.getCol(i)]);
+			}
+			for (int r = 0; r < rows; r++) {
+				for (int c = 0; c < cols; c++) {
+					int cell = mineBoard.getCell(r, c);
+					if (open[r * cols + c]) {
+						Assert.assertEquals(mineBoard.numAdjMines(r, c), cell);
+					} else {
+						Assert.assertTrue(cell == MineSweeperBoard.COVERED_CELL || cell == MineSweeperBoard.MINE);
+					}
+				}
+			}
+		}
+	}
+	@Test
+	public void testFirstClickSafe(){
+		for (int i = 0; i < 100; i++) {
+			MineSweeperBoard mineBoard = new MineSweeperBoard(MineSweeperBoard.EXPERT_LEVEL);
+			Assert.assertEquals(45, mineBoard.getNumMines());
+			Assert.assertEquals(MineSweeperBoard.COVERED_CELL, mineBoard.getCell(0, 0));
+			Assert.assertFalse(mineBoard.gameWon());
+			mineBoard.uncoverCell(0, i % 20);
+			Assert.assertFalse(mineBoard.gameLost());
+			Assert.assertEquals(0, mineBoard.getCell(0, i % 20));
+			Assert.assertEquals(45, mineBoard.getNumMines());
+		}
+	}
+	@Test
+	public void testLazyPlacementKeepsFlags(){
+		// Too many mines to keep the neighbours free, so only the
+		// clicked cell is safe and every flag ends up on a mine.
+		MineSweeperBoard mineBoard = new MineSweeperBoard(3, 3, 8);
+		mineBoard.flagCell(0, 0);
+		Assert.assertEquals(8, mineBoard.getNumMines());
+		Assert.assertFalse(mineBoard.gameWon());
+		Assert.assertEquals(1, mineBoard.uncoverCell(1, 1).size());
+		Assert.assertEquals(8, mineBoard.getCell(1, 1));
+		Assert.assertEquals(MineSweeperBoard.FLAGGED_MINE, mineBoard.getCell(0, 0));
+		Assert.assertEquals(7, mineBoard.getNumMines());
+		Assert.assertFalse(mineBoard.gameLost());
+	}
+	@Test
+	public void testConstructorSeeded(){
+		MineSweeperBoard board1 = new MineSweeperBoard(MineSweeperBoard.EXPERT_LEVEL, new java.util.Random(42));
+		MineSweeperBoard board2 = new MineSweeperBoard(MineSweeperBoard.EXPERT_LEVEL, new java.util.Random(42));
+		Assert.assertEquals(45, board1.getNumMines());
+		for (int i = 0; i < board1.getRows(); i++){
+			for (int j = 0; j < board1.getColumns(); j++){
+				Assert.assertEquals(board1.getCell(i, j), board2.getCell(i, j));
+			}
+		}
+	}
+	@Test
 	public void testNumAdjMines(){
 		MineSweeperBoard mineBoard = new MineSweeperBoard();
 		Assert.assertEquals(0, mineBoard.numAdjMines(0, 2));
@@ -71,6 +186,169 @@ public class MineSweeperBoardTest {
 		Assert.assertEquals(1, mineBoard.getCell(2, 2));
 	}
 	@Test
+	public void testUncoverCellCascade(){
+		MineSweeperBoard mineBoard = new MineSweeperBoard();
+		CellList changed = mineBoard.uncoverCell(0, 3);
+		Assert.assertEquals(8, changed.size());
+		Assert.assertEquals(0, changed.getRow(0));
+		Assert.assertEquals(3, changed.getCol(0));
+		Assert.assertEquals(0, mineBoard.getCell(1, 3));
+		Assert.assertEquals(1, mineBoard.getCell(1, 2));
+		Assert.assertEquals(MineSweeperBoard.COVERED_CELL, mineBoard.getCell(1, 0));
+		Assert.assertTrue(mineBoard.uncoverCell(0, 3).isEmpty());
+	}
+	@Test
+	public void testCompactBoard(){
+		MineSweeperBoard mineBoard = new MineSweeperBoard(3, 4, true);
+		mineBoard.setCell(0, 0, MineSweeperBoard.MINE);
+		mineBoard.setCell(2, 1, MineSweeperBoard.MINE);
+		Assert.assertEquals(2, mineBoard.getNumMines());
+		Assert.assertEquals(8, mineBoard.uncoverCell(0, 3).size());
+		Assert.assertEquals(2, mineBoard.getCell(1, 1));
+		mineBoard.flagCell(0, 0);
+		Assert.assertEquals(MineSweeperBoard.FLAGGED_MINE, mineBoard.getCell(0, 0));
+		mineBoard.flagCell(1, 0);
+		Assert.assertEquals(MineSweeperBoard.FLAG, mineBoard.getCell(1, 0));
+		mineBoard.uncoverCell(2, 1);
+		Assert.assertTrue(mineBoard.gameLost());
+		mineBoard.revealBoard();
+		Assert.assertEquals(2, mineBoard.getCell(1, 0));
+		Assert.assertEquals(MineSweeperBoard.UNCOVERED_MINE, mineBoard.getCell(0, 0));
+	}
+	@Test
+	public void testSparseBoard(){
+		// The same lazy board over sparse and packed storage.
+		int rows = 200;
+		int cols = 300;
+		int[] counts = {rows * cols, 0, 0, 0, 0, 9000};
+		SparseBoardStorage storage = new SparseBoardStorage(rows * cols,
+				MineSweeperTopology.SQUARE.table(rows, cols));
+		MineSweeperBoard sparse = new MineSweeperBoard(rows, cols, MineSweeperTopology.SQUARE,
+				storage, counts, new java.util.Random(4));
+		MineSweeperBoard packed = new MineSweeperBoard(rows, cols, MineSweeperTopology.SQUARE,
+				new PackedBoardStorage(rows * cols), counts, new java.util.Random(4));
+		java.util.Random rnd = new java.util.Random(5);
+		Assert.assertEquals(packed.uncoverCell(5, 5).size(), sparse.uncoverCell(5, 5).size());
+		for (int i = 0; i < 30; i++) {
+			int r = rnd.nextInt(20);
+			int c = rnd.nextInt(cols);
+			sparse.flagCell(r, c);
+			packed.flagCell(r, c);
+			if (packed.getCell(r + 1, c) != MineSweeperBoard.MINE) {
+				sparse.uncoverCell(r + 1, c);
+				packed.uncoverCell(r + 1, c);
+			}
+		}
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
+				Assert.assertEquals(packed.getCell(r, c), sparse.getCell(r, c));
+				Assert.assertEquals(packed.numAdjMines(r, c), sparse.numAdjMines(r, c));
+			}
+		}
+		Assert.assertEquals(packed.gameWon(), sparse.gameWon());
+		// Only the tiles of the rows that were played have been made.
+		Assert.assertTrue(storage.getTiles() < 15);
+		sparse.revealBoard();
+		Assert.assertEquals(15, storage.getTiles());
+
+		MineSweeperBoard giant = new MineSweeperBoard(5000, 4000, 2000000, new java.util.Random(6));
+		Assert.assertTrue(giant.getStorage() instanceof SparseBoardStorage);
+		giant.flagCell(2500, 2000);
+		giant.uncoverCell(10, 10);
+		Assert.assertEquals(2000000, giant.getNumMines());
+		Assert.assertTrue(((SparseBoardStorage) giant.getStorage()).getTiles() <= 2);
+	}
+	@Test
+	public void testParallelRevealBoard(){
+		// Large enough to count and reveal in parallel. One board is
+		// compact and the other is not, but their mines are the same.
+		MineSweeperBoard parallel = new MineSweeperBoard(1100, 1000, 150000,
+				new java.util.Random(13));
+		MineSweeperBoard sequential = new MineSweeperBoard(1100, 1000, 150000,
+				new java.util.Random(13), false);
+		for (int i = 0; i < 1000; i++) {
+			parallel.flagCell(i, i);
+			sequential.flagCell(i, i);
+			parallel.uncoverCell(i + 1, i);
+			sequential.uncoverCell(i + 1, i);
+		}
+		parallel.revealBoard(true);
+		sequential.revealBoard(false);
+		for (int r = 0; r < 1100; r++) {
+			for (int c = 0; c < 1000; c++) {
+				int cell = sequential.getCell(r, c);
+				Assert.assertEquals(cell, parallel.getCell(r, c));
+				if (cell != MineSweeperBoard.UNCOVERED_MINE) {
+					int mines = 0;
+					for (int nr = r - 1; nr <= r + 1; nr++) {
+						for (int nc = c - 1; nc <= c + 1; nc++) {
+							if (sequential.getCell(nr, nc) == MineSweeperBoard.UNCOVERED_MINE) {
+								mines++;
+							}
+						}
+					}
+					Assert.assertEquals(mines, cell);
+				}
+			}
+		}
+		Assert.assertTrue(parallel.gameLost());
+		Assert.assertFalse(parallel.gameWon());
+		Assert.assertEquals(sequential.getNumMines(), parallel.getNumMines());
+	}
+	@Test
+	public void testBoardListener(){
+		MineSweeperBoard mineBoard = new MineSweeperBoard();
+		final int[] calls = new int[3];
+		mineBoard.addBoardListener(new MineSweeperBoardListener() {
+			public void cellsChanged(MineSweeperBoard board, CellList changed) {
+				calls[0]++;
+				calls[1] += changed.size();
+			}
+			public void boardChanged(MineSweeperBoard board) {
+				calls[2]++;
+			}
+		});
+		mineBoard.uncoverCell(0, 3);
+		mineBoard.uncoverCell(0, 3);
+		mineBoard.flagCell(2, 0);
+		mineBoard.flagCell(0, 3);
+		Assert.assertEquals(2, calls[0]);
+		Assert.assertEquals(9, calls[1]);
+		mineBoard.revealBoard();
+		Assert.assertEquals(1, calls[2]);
+	}
+	@Test
+	public void testChordCell(){
+		MineSweeperBoard mineBoard = new MineSweeperBoard();
+		final int[] calls = new int[1];
+		mineBoard.addBoardListener(new MineSweeperBoardListener() {
+			public void cellsChanged(MineSweeperBoard board, CellList changed) {
+				calls[0]++;
+			}
+			public void boardChanged(MineSweeperBoard board) {
+			}
+		});
+		mineBoard.uncoverCell(1, 1);
+		Assert.assertEquals(2, mineBoard.getCell(1, 1));
+		Assert.assertTrue(mineBoard.chordCell(1, 1).isEmpty());
+		Assert.assertTrue(mineBoard.chordCell(0, 3).isEmpty());
+		mineBoard.flagCell(0, 0);
+		mineBoard.flagCell(2, 1);
+		calls[0] = 0;
+		// Every other safe cell is uncovered by one cascade.
+		Assert.assertEquals(9, mineBoard.chordCell(1, 1).size());
+		Assert.assertEquals(1, calls[0]);
+		Assert.assertTrue(mineBoard.gameWon());
+
+		mineBoard = new MineSweeperBoard();
+		mineBoard.uncoverCell(1, 1);
+		mineBoard.flagCell(0, 1);
+		mineBoard.flagCell(2, 1);
+		mineBoard.chordCell(1, 1);
+		Assert.assertEquals(MineSweeperBoard.UNCOVERED_MINE, mineBoard.getCell(0, 0));
+		Assert.assertTrue(mineBoard.gameLost());
+	}
+	@Test
 	public void testFlagCell(){
 		MineSweeperBoard mineBoard = new MineSweeperBoard();
 		mineBoard.flagCell(0, 3);
@@ -136,6 +414,23 @@ public class MineSweeperBoardTest {
 		Assert.assertFalse(mineBoard.gameWon());
 	}
 	@Test
+	public void testGameStateAfterFlagging(){
+		MineSweeperBoard mineBoard = new MineSweeperBoard();
+		mineBoard.flagCell(0, 0);
+		Assert.assertEquals(1, mineBoard.getNumMines());
+		mineBoard.flagCell(2, 1);
+		Assert.assertEquals(0, mineBoard.getNumMines());
+		mineBoard.uncoverCell(0, 3);
+		mineBoard.uncoverCell(1, 0);
+		Assert.assertFalse(mineBoard.gameWon());
+		mineBoard.flagCell(2, 0);
+		Assert.assertFalse(mineBoard.gameWon());
+		mineBoard.flagCell(2, 0);
+		mineBoard.uncoverCell(2, 0);
+		Assert.assertTrue(mineBoard.gameWon());
+		Assert.assertFalse(mineBoard.gameLost());
+	}
+	@Test
 	public void testNumbAdjMines() {
 		MineSweeperBoard mineBoard = new MineSweeperBoard();
 		mineBoard.setCell(0,1, MineSweeperBoard.MINE);
@@ -145,5 +440,9 @@ public class MineSweeperBoardTest {
 		mineBoard.setCell(2,0, MineSweeperBoard.MINE);
 		mineBoard.setCell(2,2, MineSweeperBoard.MINE);
 		Assert.assertEquals(8, mineBoard.numAdjMines(1, 1));
+		mineBoard.setCell(0,0, MineSweeperBoard.COVERED_CELL);
+		mineBoard.setCell(2,2, MineSweeperBoard.COVERED_CELL);
+		Assert.assertEquals(6, mineBoard.numAdjMines(1, 1));
+		Assert.assertEquals(2, mineBoard.numAdjMines(0, 0));
 	}
 }
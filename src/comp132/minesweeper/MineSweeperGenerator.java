@@ -0,0 +1,212 @@
+package comp132.minesweeper;
+
+import java.util.Random;
+
+/**
+ * A MineSweeperGenerator makes boards that can be cleared by logic
+ * alone, without ever guessing, once a chosen first cell has been
+ * uncovered. The first cell and its neighbours never hold a mine, so
+ * the first click always opens an area of the board.
+ *
+ * A board is made by placing the mines at random and letting a
+ * MineSweeperSolver play it without guessing. When the solver gets
+ * stuck, the board is repaired rather than thrown away: one of the
+ * mines next to the uncovered area is moved to a covered cell that the
+ * solver has not yet reached, the board is covered again and the solver
+ * starts over. Most boards are fixed by a few moves; a board that is
+ * still stuck after MAX_REPAIRS moves is usually stuck for good and is
+ * replaced by a new one. Boards so crowded with mines that MAX_RESTARTS
+ * new boards in a row all get stuck are seldom, if ever, solvable
+ * without guessing, and the last one is handed back as it is: its
+ * mines are still away from the first cell, but the player may have to
+ * guess.
+ *
+ * A generator is not thread-safe; use one per thread.
+ */
+public class MineSweeperGenerator {
+
+	private static final int MAX_REPAIRS = 50;
+	private static final int MAX_RESTARTS = 20;
+
+	private final Random rnd;
+	private final MineSweeperSolver solver = new MineSweeperSolver();
+
+	// The cells a mine may be moved from and to during a repair.
+	private int[] from = new int[0];
+	private int[] to = new int[0];
+
+	private long repairs;
+	private long restarts;
+
+	/**
+	 * pre: rnd != null
+	 *
+	 * Construct a generator that places mines using the given random
+	 * number generator.
+	 *
+	 * @param rnd the source of randomness.
+	 */
+	public MineSweeperGenerator(Random rnd) {
+		assert rnd != null : "no random number generator";
+		this.rnd = rnd;
+	}
+
+	/**
+	 * pre: level == BEGINNER_LEVEL || level == INTERMEDIATE_LEVEL ||
+	 *      level == EXPERT_LEVEL
+	 *
+	 * Make a board for a level of play that can be cleared without
+	 * guessing from the cell in the middle of the board.
+	 *
+	 * @param level the level of play.
+	 * @return a board on which every cell is covered.
+	 */
+	public MineSweeperBoard generate(int level) {
+		int rows = MineSweeperBoard.getLevelRows(level);
+		int cols = MineSweeperBoard.getLevelColumns(level);
+		return generate(rows, cols, MineSweeperBoard.getLevelMines(level), rows / 2, cols / 2);
+	}
+
+	/**
+	 * pre: rows > 0 && cols > 0 && rows * cols <= MineSweeperBoard.MAX_CELLS &&
+	 *      0 <= row < rows && 0 <= col < cols &&
+	 *      mines >= 0 && mines + (the number of cells around row, col) < rows * cols
+	 *
+	 * Make a board that can be cleared without guessing once the
+	 * given cell has been uncovered, or, if no such board is found after
+	 * MAX_RESTARTS tries, a board with its mines at random away from
+	 * that cell.
+	 *
+	 * @param rows the number of rows on the board.
+	 * @param cols the number of columns on the board.
+	 * @param mines the number of mines on the board.
+	 * @param row the row of the first cell to be uncovered.
+	 * @param col the column of the first cell to be uncovered.
+	 * @return a board on which every cell is covered.
+	 */
+	public MineSweeperBoard generate(int rows, int cols, int mines, int row, int col) {
+		assert rows > 0 && cols > 0 && (long) rows * cols <= MineSweeperBoard.MAX_CELLS
+			: "invalid board size";
+		assert row >= 0 && row < rows && col >= 0 && col < cols : "invalid first cell";
+		int near = (Math.min(row + 1, rows - 1) - Math.max(row - 1, 0) + 1)
+			* (Math.min(col + 1, cols - 1) - Math.max(col - 1, 0) + 1);
+		assert mines >= 0 && mines + near <= rows * cols : "too many mines";
+		long start = MineSweeperMetrics.start();
+		if (from.length < rows * cols) {
+			from = new int[rows * cols];
+			to = new int[rows * cols];
+		}
+		for (int restart = 0; ; restart++) {
+			MineSweeperBoard board = new MineSweeperBoard(rows, cols, mines, rnd, row, col);
+			if (restart == MAX_RESTARTS) {
+				MineSweeperMetrics.generated(start, rows, cols, mines);
+				return board;
+			}
+			for (int repair = 0; repair < MAX_REPAIRS; repair++) {
+				boolean solved = solver.solve(board, row, col, false);
+				boolean moved = !solved && moveMine(board, row, col);
+				cover(board);
+				if (solved) {
+					MineSweeperMetrics.generated(start, rows, cols, mines);
+					return board;
+				} else if (!moved) {
+					break;
+				}
+				repairs++;
+			}
+			restarts++;
+		}
+	}
+
+	/**
+	 * Get the number of times a mine has been moved to repair a board.
+	 *
+	 * @return the number of repairs.
+	 */
+	public long getRepairs() {
+		return repairs;
+	}
+
+	/**
+	 * Get the number of times a board has been replaced because it
+	 * could not be repaired.
+	 *
+	 * @return the number of boards replaced.
+	 */
+	public long getRestarts() {
+		return restarts;
+	}
+
+	/**
+	 * pre: the solver is stuck on the board
+	 *
+	 * Move a random covered mine next to the uncovered area to a random
+	 * covered cell away from it. If every covered cell is next to the
+	 * uncovered area the mine is moved to one of those instead.
+	 *
+	 * @return true if a mine was moved.
+	 */
+	private boolean moveMine(MineSweeperBoard board, int row, int col) {
+		int rows = board.getRows();
+		int cols = board.getColumns();
+		int numFrom = 0;
+		int numTo = 0;
+		int numNear = 0;
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
+				int cell = board.getCell(r, c);
+				if (cell == MineSweeperBoard.MINE && touchesUncovered(board, r, c)) {
+					from[numFrom++] = r * cols + c;
+				} else if (cell == MineSweeperBoard.COVERED_CELL && !isNear(r, c, row, col)) {
+					// Targets away from the uncovered area fill the
+					// front of the array and the others the back.
+					if (touchesUncovered(board, r, c)) {
+						to[to.length - 1 - numNear++] = r * cols + c;
+					} else {
+						to[numTo++] = r * cols + c;
+					}
+				}
+			}
+		}
+		if (numFrom == 0 || numTo + numNear == 0) {
+			return false;
+		}
+		int mine = from[rnd.nextInt(numFrom)];
+		int target = numTo > 0 ? to[rnd.nextInt(numTo)] : to[to.length - 1 - rnd.nextInt(numNear)];
+		board.setCell(mine / cols, mine % cols, MineSweeperBoard.COVERED_CELL);
+		board.setCell(target / cols, target % cols, MineSweeperBoard.MINE);
+		return true;
+	}
+
+	/**
+	 * Cover every cell again and take away the flags, leaving the
+	 * mines where they are.
+	 */
+	private static void cover(MineSweeperBoard board) {
+		for (int r = 0; r < board.getRows(); r++) {
+			for (int c = 0; c < board.getColumns(); c++) {
+				int cell = board.getCell(r, c);
+				if (cell >= 0 || cell == MineSweeperBoard.FLAG) {
+					board.setCell(r, c, MineSweeperBoard.COVERED_CELL);
+				} else if (cell == MineSweeperBoard.FLAGGED_MINE) {
+					board.setCell(r, c, MineSweeperBoard.MINE);
+				}
+			}
+		}
+	}
+
+	private static boolean touchesUncovered(MineSweeperBoard board, int row, int col) {
+		for (int r = row - 1; r <= row + 1; r++) {
+			for (int c = col - 1; c <= col + 1; c++) {
+				if (board.getCell(r, c) >= 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean isNear(int r, int c, int row, int col) {
+		return Math.abs(r - row) <= 1 && Math.abs(c - col) <= 1;
+	}
+}
@@ -0,0 +1,91 @@
+package comp132.minesweeper;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class MineSweeperGeneratorTest {
+
+	@Test
+	public void testGenerateNoGuess() {
+		MineSweeperGenerator generator = new MineSweeperGenerator(new Random(5));
+		MineSweeperSolver solver = new MineSweeperSolver();
+		for (int i = 0; i < 50; i++) {
+			MineSweeperBoard board = generator.generate(MineSweeperBoard.EXPERT_LEVEL);
+			Assert.assertEquals(45, board.getNumMines());
+			for (int r = 0; r < board.getRows(); r++) {
+				for (int c = 0; c < board.getColumns(); c++) {
+					int cell = board.getCell(r, c);
+					Assert.assertTrue(cell == MineSweeperBoard.COVERED_CELL
+							|| cell == MineSweeperBoard.MINE);
+				}
+			}
+			Assert.assertEquals(0, board.numAdjMines(7, 10));
+			Assert.assertTrue(solver.solve(board, 7, 10, false));
+		}
+		Assert.assertEquals(0, solver.getGuesses());
+	}
+
+	@Test
+	public void testGenerateDense() {
+		MineSweeperGenerator generator = new MineSweeperGenerator(new Random(6));
+		MineSweeperBoard board = generator.generate(16, 30, 99, 0, 0);
+		Assert.assertEquals(99, board.getNumMines());
+		Assert.assertTrue(new MineSweeperSolver().solve(board, 0, 0, false));
+	}
+
+	@Test
+	public void testGenerateCrowded() {
+		// Too many mines to clear without guessing, so the generator gives
+		// up and hands back a random board rather than trying forever.
+		MineSweeperGenerator generator = new MineSweeperGenerator(new Random(7));
+		MineSweeperBoard board = generator.generate(8, 8, 55, 0, 0);
+		Assert.assertEquals(55, board.getNumMines());
+		Assert.assertEquals(0, board.numAdjMines(0, 0));
+		Assert.assertTrue(generator.getRestarts() > 0);
+	}
+
+	@Test
+	public void testGenerateCorner() {
+		// A corner cell has only three neighbours, so all but four cells
+		// of the board may hold mines.
+		MineSweeperGenerator generator = new MineSweeperGenerator(new Random(8));
+		for (int mines = 56; mines <= 60; mines++) {
+			MineSweeperBoard board = generator.generate(8, 8, mines, 0, 0);
+			Assert.assertEquals(mines, board.getNumMines());
+			Assert.assertEquals(0, board.numAdjMines(0, 0));
+			Assert.assertEquals(MineSweeperBoard.COVERED_CELL, board.getCell(0, 0));
+		}
+	}
+
+	@Test
+	public void testPool() throws InterruptedException {
+		MineSweeperBoardPool pool = new MineSweeperBoardPool(2);
+		try {
+			int generated = 0;
+			for (int i = 0; i < 1000 && generated < 5; i++) {
+				MineSweeperBoard board = pool.take(MineSweeperBoard.INTERMEDIATE_LEVEL, i);
+				Assert.assertEquals(15, board.getNumMines());
+				if (board.getCell(5, 7) == MineSweeperBoard.COVERED_CELL) {
+					// The pool was empty, so the board places its mines on
+					// the first click, away from the clicked cell.
+					board.uncoverCell(0, 0);
+					Assert.assertEquals(0, board.numAdjMines(0, 0));
+					Assert.assertFalse(board.gameLost());
+					Thread.sleep(10);
+					continue;
+				}
+				generated++;
+				Assert.assertEquals(0, board.getCell(5, 7));
+				Assert.assertFalse(board.gameLost());
+				Assert.assertTrue(new MineSweeperSolver().solve(board, -1, -1, false));
+			}
+			Assert.assertEquals(5, generated);
+		}
+		finally {
+			pool.close();
+		}
+	}
+}
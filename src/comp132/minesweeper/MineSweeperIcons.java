@@ -0,0 +1,215 @@
+package comp132.minesweeper;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * MineSweeperIcons loads the images in the icons directory once, and is
+ * the one place the rest of the game gets them from. The images are
+ * decoded in parallel the first time one is asked for and converted to
+ * the screen's own pixel format, so drawing them is a plain copy. Scaled
+ * copies for HiDPI screens and zooming are made on request and kept.
+ *
+ * Each image is looked for first on the class path, as /icons/name.jpg,
+ * and then in an icons directory under the working directory.
+ */
+public class MineSweeperIcons {
+
+	public static final String EMPTY = "empty";
+	public static final String FLAG = "flag";
+	public static final String MINE = "mine";
+	public static final String HIT_MINE = "hitMine";
+	public static final String WRONG_MINE = "wrongMine";
+
+	/**
+	 * The names of the images showing 0 to 8 adjacent mines, indexed
+	 * by the number shown.
+	 */
+	public static final String[] NUMBERS = {"zero", "one", "two", "three",
+		"four", "five", "six", "seven", "eight"};
+
+	/**
+	 * The width and height of every image at its natural size.
+	 */
+	public static final int ICON_SIZE = 16;
+
+	private static final Map<String, BufferedImage> images =
+		new HashMap<String, BufferedImage>();
+	private static final Map<String, BufferedImage> scaled =
+		new HashMap<String, BufferedImage>();
+	private static final Map<String, ImageIcon> icons =
+		new HashMap<String, ImageIcon>();
+
+	private MineSweeperIcons() {
+	}
+
+	/**
+	 * Load every image, decoding them in parallel, the first time any
+	 * image is asked for. This is not done in a static initializer
+	 * because the loading threads call back into this class.
+	 */
+	private static synchronized void loadAll() {
+		if (!images.isEmpty()) {
+			return;
+		}
+		List<String> names = new ArrayList<String>();
+		names.add(EMPTY);
+		names.add(FLAG);
+		names.add(MINE);
+		names.add(HIT_MINE);
+		names.add(WRONG_MINE);
+		for (String n : NUMBERS) {
+			names.add(n);
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(
+			Math.min(names.size(), Runtime.getRuntime().availableProcessors()));
+		try {
+			List<Future<BufferedImage>> loads = new ArrayList<Future<BufferedImage>>();
+			for (final String n : names) {
+				loads.add(pool.submit(new Callable<BufferedImage>() {
+					public BufferedImage call() {
+						return load(n);
+					}
+				}));
+			}
+			for (int i = 0; i < names.size(); i++) {
+				images.put(names.get(i), loads.get(i).get());
+			}
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("could not load icons", e);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Get an image at its natural size.
+	 *
+	 * @param name the name of the image, such as FLAG.
+	 * @return the image.
+	 */
+	public static synchronized BufferedImage getImage(String name) {
+		loadAll();
+		return images.get(name);
+	}
+
+	/**
+	 * pre: size > 0
+	 *
+	 * Get an image scaled to the given width and height. The scaled
+	 * image is made once and kept for later calls.
+	 *
+	 * @param name the name of the image, such as FLAG.
+	 * @param size the width and height of the image in pixels.
+	 * @return the scaled image.
+	 */
+	public static synchronized BufferedImage getImage(String name, int size) {
+		assert size > 0 : "invalid size";
+		loadAll();
+		if (size == ICON_SIZE) {
+			return images.get(name);
+		}
+		String key = name + "@" + size;
+		BufferedImage image = scaled.get(key);
+		if (image == null) {
+			image = compatibleImage(size, size);
+			Graphics2D g = image.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+					   RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+			g.drawImage(images.get(name), 0, 0, size, size, null);
+			g.dispose();
+			scaled.put(key, image);
+		}
+		return image;
+	}
+
+	/**
+	 * Get an image as an ImageIcon, for use on menus.
+	 *
+	 * @param name the name of the image, such as FLAG.
+	 * @return the icon.
+	 */
+	public static synchronized ImageIcon getIcon(String name) {
+		ImageIcon icon = icons.get(name);
+		if (icon == null) {
+			loadAll();
+			icon = new ImageIcon(images.get(name));
+			icons.put(name, icon);
+		}
+		return icon;
+	}
+
+	/**
+	 * Get the number of screen pixels per pixel of drawing, which is
+	 * more than 1 on HiDPI screens.
+	 *
+	 * @return the scale of the default screen.
+	 */
+	public static double getScreenScale() {
+		if (GraphicsEnvironment.isHeadless()) {
+			return 1;
+		}
+		return GraphicsEnvironment.getLocalGraphicsEnvironment()
+			.getDefaultScreenDevice().getDefaultConfiguration()
+			.getDefaultTransform().getScaleX();
+	}
+
+	/**
+	 * Make an empty image in the pixel format of the screen.
+	 *
+	 * @param width the width of the image.
+	 * @param height the height of the image.
+	 * @return the image.
+	 */
+	static BufferedImage compatibleImage(int width, int height) {
+		if (GraphicsEnvironment.isHeadless()) {
+			return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		}
+		GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+			.getDefaultScreenDevice().getDefaultConfiguration();
+		return gc.createCompatibleImage(width, height);
+	}
+
+	/**
+	 * Read and convert one image.
+	 */
+	private static BufferedImage load(String name) {
+		String path = "icons/" + name + ".jpg";
+		BufferedImage read;
+		try {
+			URL url = MineSweeperIcons.class.getResource("/" + path);
+			if (url != null) {
+				read = ImageIO.read(url);
+			} else {
+				read = ImageIO.read(new File(path));
+			}
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("could not read " + path, e);
+		}
+		BufferedImage image = compatibleImage(read.getWidth(), read.getHeight());
+		Graphics2D g = image.createGraphics();
+		g.drawImage(read, 0, 0, null);
+		g.dispose();
+		return image;
+	}
+}
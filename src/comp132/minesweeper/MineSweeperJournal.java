@@ -0,0 +1,521 @@
+package comp132.minesweeper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A MineSweeperJournal makes moves on a board and remembers every one
+ * of them, so that a game can be played again exactly, wound back to
+ * any earlier move and forward again.
+ *
+ * The moves form a timeline with a current position. Undo and redo move
+ * the position back and forward along it; a new move made after an undo
+ * replaces the moves that were undone. A copy of the board is kept
+ * every few moves, so going to any move restores the nearest copy at or
+ * before it and replays only the moves after that, never the whole game.
+ * At most MAX_CHECKPOINTS copies are kept: when another would be one too
+ * many, every other copy is dropped and copies are made half as often
+ * from then on, so a game of n moves keeps a fixed number of copies and
+ * going to a move replays fewer than 2 * n / MAX_CHECKPOINTS moves. A
+ * board whose mines have not been placed yet is not copied at all when
+ * the journal begins; going back to the start covers it again instead.
+ *
+ * A journal can also write everything that happens to a stream that is
+ * only ever appended to. All values are big-endian:
+ * <pre>
+ * size  contents
+ * 4     MAGIC ("MSWJ")
+ * 4     VERSION
+ * 8     seed
+ *       the board when the journal began, as written by MineSweeperBoardIO
+ * </pre>
+ * followed by one record for each move, undo and redo:
+ * <pre>
+ * 1     UNCOVER, FLAG or CHORD
+ * 4     row
+ * 4     column
+ * </pre>
+ * or
+ * <pre>
+ * 1     2, a jump along the timeline
+ * 4     the position jumped to
+ * </pre>
+ * Undo and redo are written as jumps rather than by taking moves out,
+ * so the stream keeps everything the player did, and replay rebuilds
+ * both the board and its timeline.
+ *
+ * A board whose mines have not been placed yet must be made from the
+ * journal's seed, with MineSweeperBoard(rows, cols, numMines, seed), for
+ * the mines to land in the same cells when the game is replayed.
+ */
+public class MineSweeperJournal {
+
+	/**
+	 * The first four bytes of every journal.
+	 */
+	public static final int MAGIC = 0x4D53574A;
+
+	/**
+	 * The version of the format written by this class.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * A move that uncovers a cell.
+	 */
+	public static final int UNCOVER = 0;
+
+	/**
+	 * A move that places or removes a flag.
+	 */
+	public static final int FLAG = 1;
+
+	private static final int SEEK = 2;
+
+	/**
+	 * A move that uncovers the neighbours of a number.
+	 */
+	public static final int CHORD = 3;
+
+	/*
+	 * The board is copied every CHECKPOINT_MOVES moves, or less often on
+	 * boards so large that a copy costs more than the moves it saves.
+	 */
+	private static final int CHECKPOINT_MOVES = 64;
+
+	/**
+	 * The most copies of the board a journal keeps, counting the board
+	 * when the journal began.
+	 */
+	static final int MAX_CHECKPOINTS = 32;
+
+	// A move is stored as its kind above the row-major index of its cell.
+	private static final int KIND_SHIFT = 28;
+	private static final int INDEX_MASK = (1 << KIND_SHIFT) - 1;
+
+	private final MineSweeperBoard board;
+	private final long seed;
+	private final DataOutputStream out;
+	private int interval;
+
+	// The mines of the board when the journal began, if they had still
+	// to be placed and no cell had been touched, or -1.
+	private final int startMines;
+
+	private int[] moves = new int[CHECKPOINT_MOVES];
+	private int length;
+	private int position;
+	// Checkpoint k is the board after the first k * interval moves.
+	// Checkpoint 0 is null if the board began with its mines unplaced.
+	private final List<MineSweeperBoard> checkpoints = new ArrayList<MineSweeperBoard>();
+
+	/**
+	 * pre: board != null
+	 *
+	 * Construct a journal that keeps the moves made on a board in
+	 * memory only.
+	 *
+	 * @param board the board the moves are made on.
+	 * @param seed the seed the board was made from.
+	 */
+	public MineSweeperJournal(MineSweeperBoard board, long seed) {
+		this(board, seed, (DataOutputStream) null);
+	}
+
+	/**
+	 * pre: board != null && stream != null
+	 *
+	 * Construct a journal that also writes the board and every move made
+	 * on it to a stream. The stream is flushed after every move, and
+	 * closed by close.
+	 *
+	 * @param board the board the moves are made on.
+	 * @param seed the seed the board was made from.
+	 * @param stream the stream to write to.
+	 */
+	public MineSweeperJournal(MineSweeperBoard board, long seed, OutputStream stream)
+			throws IOException {
+		this(board, seed, new DataOutputStream(new BufferedOutputStream(stream)));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(seed);
+		MineSweeperBoardIO.write(board, seed, 0, out);
+		out.flush();
+	}
+
+	private MineSweeperJournal(MineSweeperBoard board, long seed, DataOutputStream out) {
+		assert board != null : "no board";
+		this.board = board;
+		this.seed = seed;
+		this.out = out;
+		interval = Math.max(CHECKPOINT_MOVES, board.getRows() * board.getColumns() >>> 12);
+		int[] counts = board.getCounts();
+		if (counts[5] > 0 && counts[0] == board.getRows() * board.getColumns()) {
+			startMines = counts[5];
+			checkpoints.add(null);
+		} else {
+			startMines = -1;
+			checkpoints.add(board.copy(new Random(seed)));
+		}
+	}
+
+	/**
+	 * Read a journal written to a file and replay it.
+	 *
+	 * @param file the file to read.
+	 * @return the journal, at the position it was at when it was written.
+	 * @throws IOException if the file cannot be read or is not a journal.
+	 */
+	public static MineSweeperJournal replay(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return replay(in);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Read a journal from a stream and replay every move, undo and redo
+	 * in it on a new board. The new journal does not write anything.
+	 *
+	 * @param stream the stream to read.
+	 * @return the journal, at the position it was at when it was written.
+	 * @throws IOException if the stream cannot be read or is not a journal.
+	 */
+	public static MineSweeperJournal replay(InputStream stream) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+		if (in.readInt() != MAGIC) {
+			throw new IOException("not a Mine Sweeper journal");
+		}
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("unsupported journal version " + version);
+		}
+		long seed = in.readLong();
+		MineSweeperBoard board = MineSweeperBoardIO.read(in).getBoard();
+		MineSweeperJournal journal = new MineSweeperJournal(board, seed, (DataOutputStream) null);
+		int kind;
+		while ((kind = in.read()) >= 0) {
+			if (kind == SEEK) {
+				int move = in.readInt();
+				if (move < 0 || move > journal.length) {
+					throw new IOException("journal jumps to missing move " + move);
+				}
+				journal.goTo(move);
+			} else if (kind == UNCOVER || kind == FLAG || kind == CHORD) {
+				int row = in.readInt();
+				int col = in.readInt();
+				if (row < 0 || row >= board.getRows() || col < 0 || col >= board.getColumns()) {
+					throw new IOException("journal move off the board at " + row + ", " + col);
+				}
+				journal.append(kind, row, col);
+			} else {
+				throw new IOException("unknown journal record " + kind);
+			}
+		}
+		return journal;
+	}
+
+	/**
+	 * Get the board the moves are made on.
+	 *
+	 * @return the board.
+	 */
+	public MineSweeperBoard getBoard() {
+		return board;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * pre: 0 <= row < getBoard().getRows() && 0 <= col < getBoard().getColumns()
+	 *
+	 * Uncover a cell, as uncoverCell does, and record the move.
+	 *
+	 * @param row the row of the cell.
+	 * @param col the column of the cell.
+	 */
+	public void uncover(int row, int col) {
+		write(UNCOVER, row, col);
+		append(UNCOVER, row, col);
+	}
+
+	/**
+	 * pre: 0 <= row < getBoard().getRows() && 0 <= col < getBoard().getColumns()
+	 *
+	 * Place or remove a flag, as flagCell does, and record the move.
+	 *
+	 * @param row the row of the cell.
+	 * @param col the column of the cell.
+	 */
+	public void flag(int row, int col) {
+		write(FLAG, row, col);
+		append(FLAG, row, col);
+	}
+
+	/**
+	 * pre: 0 <= row < getBoard().getRows() && 0 <= col < getBoard().getColumns()
+	 *
+	 * Uncover the neighbours of a number, as chordCell does, and record
+	 * the move.
+	 *
+	 * @param row the row of the number.
+	 * @param col the column of the number.
+	 */
+	public void chord(int row, int col) {
+		write(CHORD, row, col);
+		append(CHORD, row, col);
+	}
+
+	/**
+	 * Get the number of moves on the timeline, including any that have
+	 * been undone and can be redone.
+	 *
+	 * @return the number of moves.
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Get the number of moves that have been made on the board, that is
+	 * the position on the timeline.
+	 *
+	 * @return the position, from 0 to getLength().
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * pre: 0 <= move < getLength()
+	 *
+	 * Get the kind of a move on the timeline.
+	 *
+	 * @param move the number of the move, from 0.
+	 * @return UNCOVER, FLAG or CHORD.
+	 */
+	public int getKind(int move) {
+		assert move >= 0 && move < length : "no such move";
+		return moves[move] >>> KIND_SHIFT;
+	}
+
+	/**
+	 * pre: 0 <= move < getLength()
+	 *
+	 * Get the row of the cell of a move on the timeline.
+	 *
+	 * @param move the number of the move, from 0.
+	 * @return the row.
+	 */
+	public int getRow(int move) {
+		assert move >= 0 && move < length : "no such move";
+		return (moves[move] & INDEX_MASK) / board.getColumns();
+	}
+
+	/**
+	 * pre: 0 <= move < getLength()
+	 *
+	 * Get the column of the cell of a move on the timeline.
+	 *
+	 * @param move the number of the move, from 0.
+	 * @return the column.
+	 */
+	public int getCol(int move) {
+		assert move >= 0 && move < length : "no such move";
+		return (moves[move] & INDEX_MASK) % board.getColumns();
+	}
+
+	public boolean canUndo() {
+		return position > 0;
+	}
+
+	public boolean canRedo() {
+		return position < length;
+	}
+
+	/**
+	 * Take back the last move made, if there is one.
+	 */
+	public void undo() {
+		if (canUndo()) {
+			seek(position - 1);
+		}
+	}
+
+	/**
+	 * Make the last move undone again, if there is one.
+	 */
+	public void redo() {
+		if (canRedo()) {
+			seek(position + 1);
+		}
+	}
+
+	/**
+	 * pre: 0 <= move <= getLength()
+	 *
+	 * Put the board in the state it was in after the given number of
+	 * moves on the timeline. The moves after it can still be redone.
+	 *
+	 * @param move the number of moves to have made.
+	 */
+	public void seek(int move) {
+		assert move >= 0 && move <= length : "no such move";
+		if (out != null) {
+			try {
+				out.writeByte(SEEK);
+				out.writeInt(move);
+				out.flush();
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("journal could not be written", e);
+			}
+		}
+		goTo(move);
+	}
+
+	/**
+	 * Close the stream the journal is written to, if there is one.
+	 */
+	public void close() throws IOException {
+		if (out != null) {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write a move to the stream, before it is made, so that a move is
+	 * never made without being recorded.
+	 */
+	private void write(int kind, int row, int col) {
+		assert row >= 0 && row < board.getRows() && col >= 0 && col < board.getColumns()
+			: "invalid cell";
+		if (out != null) {
+			try {
+				out.writeByte(kind);
+				out.writeInt(row);
+				out.writeInt(col);
+				out.flush();
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("journal could not be written", e);
+			}
+		}
+	}
+
+	/**
+	 * Put a new move at the current position, replacing any moves that
+	 * have been undone, and make it.
+	 */
+	private void append(int kind, int row, int col) {
+		length = position;
+		while (checkpoints.size() > position / interval + 1) {
+			checkpoints.remove(checkpoints.size() - 1);
+		}
+		if (length == moves.length) {
+			int[] bigger = new int[moves.length * 2];
+			System.arraycopy(moves, 0, bigger, 0, length);
+			moves = bigger;
+		}
+		moves[length++] = kind << KIND_SHIFT | (row * board.getColumns() + col);
+		makeNextMove();
+	}
+
+	/**
+	 * Go to a position on the timeline, from the nearest checkpoint
+	 * before it if it is behind the current position.
+	 */
+	private void goTo(int move) {
+		if (move < position) {
+			int checkpoint = move / interval;
+			if (checkpoints.get(checkpoint) == null) {
+				board.reset(startMines, new Random(seed));
+			} else {
+				board.restore(checkpoints.get(checkpoint), new Random(seed));
+			}
+			position = checkpoint * interval;
+		}
+		while (position < move) {
+			makeNextMove();
+		}
+	}
+
+	/**
+	 * Make the move at the current position and step past it, keeping a
+	 * checkpoint if one is due and thinning the checkpoints out if there
+	 * are then too many.
+	 */
+	private void makeNextMove() {
+		int index = moves[position] & INDEX_MASK;
+		int row = index / board.getColumns();
+		int col = index % board.getColumns();
+		int kind = moves[position] >>> KIND_SHIFT;
+		if (kind == UNCOVER) {
+			board.uncoverCell(row, col);
+		} else if (kind == CHORD) {
+			board.chordCell(row, col);
+		} else {
+			board.flagCell(row, col);
+		}
+		position++;
+		if (position % interval == 0 && checkpoints.size() == position / interval) {
+			checkpoints.add(board.copy(new Random(seed)));
+			if (checkpoints.size() > MAX_CHECKPOINTS) {
+				for (int k = 1; 2 * k < checkpoints.size(); k++) {
+					checkpoints.set(k, checkpoints.get(2 * k));
+				}
+				int kept = (checkpoints.size() + 1) / 2;
+				while (checkpoints.size() > kept) {
+					checkpoints.remove(checkpoints.size() - 1);
+				}
+				interval *= 2;
+			}
+		}
+	}
+
+	/**
+	 * Get the number of copies of the board the journal is keeping.
+	 *
+	 * @return the number of checkpoints, at most MAX_CHECKPOINTS.
+	 */
+	int getCheckpoints() {
+		return checkpoints.size();
+	}
+
+	/**
+	 * Replay journals and report how quickly their moves were made, for
+	 * load testing with recorded games. Run it as
+	 * <pre>
+	 * java comp132.minesweeper.MineSweeperJournal journal...
+	 * </pre>
+	 */
+	public static void main(String[] args) throws IOException {
+		long moves = 0;
+		long start = System.nanoTime();
+		for (String name : args) {
+			MineSweeperJournal journal = replay(new File(name));
+			MineSweeperBoard board = journal.getBoard();
+			String state = board.gameWon() ? "won" : board.gameLost() ? "lost" : "in play";
+			System.out.println(name + ": " + journal.getPosition() + " of "
+					   + journal.getLength() + " moves, " + state);
+			moves += journal.getLength();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d moves in %.3f s%n", moves, seconds);
+	}
+}
@@ -0,0 +1,124 @@
+package comp132.minesweeper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class MineSweeperJournalTest {
+
+	/**
+	 * Make random moves, flagging cells more often than uncovering them
+	 * so that the game lasts past several checkpoints.
+	 */
+	private static void play(MineSweeperJournal journal, int moves, long seed) {
+		MineSweeperBoard board = journal.getBoard();
+		Random rnd = new Random(seed);
+		for (int i = 0; i < moves; i++) {
+			int r = rnd.nextInt(board.getRows());
+			int c = rnd.nextInt(board.getColumns());
+			if (rnd.nextInt(4) == 0 && board.getCell(r, c) != MineSweeperBoard.MINE) {
+				journal.uncover(r, c);
+			} else {
+				journal.flag(r, c);
+			}
+		}
+	}
+
+	private static int[] cells(MineSweeperBoard board) {
+		int[] cells = new int[board.getRows() * board.getColumns()];
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = board.getCell(i / board.getColumns(), i % board.getColumns());
+		}
+		return cells;
+	}
+
+	@Test
+	public void testUndoAndRedo() {
+		MineSweeperBoard board = new MineSweeperBoard(20, 30, 60, new Random(1));
+		MineSweeperJournal journal = new MineSweeperJournal(board, 1);
+		int[][] states = new int[301][];
+		states[0] = cells(board);
+		Random rnd = new Random(2);
+		for (int i = 1; i <= 300; i++) {
+			play(journal, 1, rnd.nextLong());
+			states[i] = cells(board);
+		}
+
+		for (int move : new int[] {299, 0, 150, 64, 63, 300, 129}) {
+			journal.seek(move);
+			Assert.assertEquals(move, journal.getPosition());
+			Assert.assertTrue(java.util.Arrays.equals(states[move], cells(board)));
+		}
+		journal.undo();
+		Assert.assertTrue(java.util.Arrays.equals(states[128], cells(board)));
+		journal.redo();
+		Assert.assertTrue(java.util.Arrays.equals(states[129], cells(board)));
+		Assert.assertEquals(300, journal.getLength());
+
+		// A new move replaces the moves that had been undone.
+		journal.seek(100);
+		journal.flag(journal.getRow(100), journal.getCol(100));
+		Assert.assertEquals(101, journal.getLength());
+		Assert.assertFalse(journal.canRedo());
+		journal.seek(50);
+		Assert.assertTrue(java.util.Arrays.equals(states[50], cells(board)));
+	}
+
+	@Test
+	public void testReplay() throws IOException {
+		// The mines of a lazy board are placed again from the seed.
+		MineSweeperBoard board = new MineSweeperBoard(16, 30, 99, MineSweeperTopology.SQUARE, 7L);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		MineSweeperJournal journal = new MineSweeperJournal(board, 7, out);
+		play(journal, 100, 8);
+		journal.seek(40);
+		play(journal, 50, 9);
+		journal.undo();
+		journal.undo();
+		journal.close();
+
+		MineSweeperJournal replayed = MineSweeperJournal.replay(new ByteArrayInputStream(out.toByteArray()));
+		Assert.assertEquals(7, replayed.getSeed());
+		Assert.assertEquals(90, replayed.getLength());
+		Assert.assertEquals(88, replayed.getPosition());
+		Assert.assertTrue(java.util.Arrays.equals(cells(board), cells(replayed.getBoard())));
+		Assert.assertEquals(board.gameLost(), replayed.getBoard().gameLost());
+
+		journal.seek(0);
+		replayed.seek(0);
+		Assert.assertTrue(java.util.Arrays.equals(cells(board), cells(replayed.getBoard())));
+		journal.seek(90);
+		replayed.seek(90);
+		Assert.assertTrue(java.util.Arrays.equals(cells(board), cells(replayed.getBoard())));
+	}
+
+	@Test
+	public void testLongGameKeepsFewCheckpoints() {
+		// The board starts with its mines unplaced, so it is not copied
+		// until a checkpoint is due.
+		MineSweeperBoard board = new MineSweeperBoard(30, 30, 150, MineSweeperTopology.SQUARE, 3L);
+		MineSweeperJournal journal = new MineSweeperJournal(board, 3);
+		int[][] states = new int[5001][];
+		states[0] = cells(board);
+		Random rnd = new Random(4);
+		for (int i = 1; i <= 5000; i++) {
+			play(journal, 1, rnd.nextLong());
+			states[i] = cells(board);
+			Assert.assertTrue(journal.getCheckpoints() <= MineSweeperJournal.MAX_CHECKPOINTS);
+		}
+
+		for (int move : new int[] {4999, 0, 2500, 1, 4096, 5000, 63, 3333}) {
+			journal.seek(move);
+			Assert.assertTrue(java.util.Arrays.equals(states[move], cells(board)));
+		}
+		journal.seek(0);
+		Assert.assertEquals(150, board.getNumMines());
+		journal.seek(5000);
+		Assert.assertTrue(java.util.Arrays.equals(states[5000], cells(board)));
+	}
+}
@@ -8,17 +8,20 @@ public class MineSweeperMenuHandler
 
     private JMenu levelMenu;
     private JMenu gameMenu;
+    private JMenu shapeMenu;
 
-    private static final ImageIcon EMPTY_ICON = new ImageIcon("icons/empty.jpg");
-    private static final ImageIcon FLAG_ICON = new ImageIcon("icons/flag.jpg");
+    private static final ImageIcon EMPTY_ICON = MineSweeperIcons.getIcon(MineSweeperIcons.EMPTY);
+    private static final ImageIcon FLAG_ICON = MineSweeperIcons.getIcon(MineSweeperIcons.FLAG);
 
-    public MineSweeperMenuHandler(JMenu lm, JMenu gm) {
+    public MineSweeperMenuHandler(JMenu lm, JMenu gm, JMenu sm) {
 	levelMenu = lm;
 	gameMenu = gm;
+	shapeMenu = sm;
     }
 
     public void resetMenus() {
 	levelMenu.setEnabled(true);
+	shapeMenu.setEnabled(true);
 	gameMenu.getItem(0).setEnabled(true);
 	gameMenu.getItem(1).setEnabled(false);
 	gameMenu.getItem(2).setEnabled(false);
@@ -26,6 +29,7 @@ public class MineSweeperMenuHandler
 
     public void actLikeStart() {
 	levelMenu.setEnabled(false);
+	shapeMenu.setEnabled(false);
 	gameMenu.getItem(0).setEnabled(false);
 	gameMenu.getItem(1).setEnabled(true);
 	gameMenu.getItem(2).setEnabled(true);
@@ -38,6 +42,7 @@ public class MineSweeperMenuHandler
 	    levelMenu.getItem(0).setIcon(FLAG_ICON);
 	    levelMenu.getItem(1).setIcon(EMPTY_ICON);
 	    levelMenu.getItem(2).setIcon(EMPTY_ICON);
+	    levelMenu.getItem(3).setIcon(EMPTY_ICON);
 	    MineSweeper.setLevel(MineSweeperBoard.BEGINNER_LEVEL);
 	    MineSweeper.makeNewBoard();
 	}
@@ -45,6 +50,7 @@ public class MineSweeperMenuHandler
 	    levelMenu.getItem(0).setIcon(EMPTY_ICON);
 	    levelMenu.getItem(1).setIcon(FLAG_ICON);
 	    levelMenu.getItem(2).setIcon(EMPTY_ICON);
+	    levelMenu.getItem(3).setIcon(EMPTY_ICON);
 	    MineSweeper.setLevel(MineSweeperBoard.INTERMEDIATE_LEVEL);
 	    MineSweeper.makeNewBoard();
 	}
@@ -52,11 +58,33 @@ public class MineSweeperMenuHandler
 	    levelMenu.getItem(0).setIcon(EMPTY_ICON);
 	    levelMenu.getItem(1).setIcon(EMPTY_ICON);
 	    levelMenu.getItem(2).setIcon(FLAG_ICON);
+	    levelMenu.getItem(3).setIcon(EMPTY_ICON);
 	    MineSweeper.setLevel(MineSweeperBoard.EXPERT_LEVEL);	    
 	    MineSweeper.makeNewBoard();
 	}
+	else if (e.getActionCommand().equals("Custom...")) {
+	    int rows = askFor("Number of rows:", 1, MineSweeperBoard.MAX_CELLS);
+	    if (rows < 0) {
+		return;
+	    }
+	    int cols = askFor("Number of columns:", 1, MineSweeperBoard.MAX_CELLS / rows);
+	    if (cols < 0) {
+		return;
+	    }
+	    int mines = askFor("Number of mines:", 0, rows * cols);
+	    if (mines < 0) {
+		return;
+	    }
+	    levelMenu.getItem(0).setIcon(EMPTY_ICON);
+	    levelMenu.getItem(1).setIcon(EMPTY_ICON);
+	    levelMenu.getItem(2).setIcon(EMPTY_ICON);
+	    levelMenu.getItem(3).setIcon(FLAG_ICON);
+	    MineSweeper.setBoardSize(rows, cols, mines);
+	    MineSweeper.makeNewBoard();
+	}
 	else if (e.getActionCommand().equals("Start Game")) {
 	    levelMenu.setEnabled(false);
+	    shapeMenu.setEnabled(false);
 	    gameMenu.getItem(0).setEnabled(false);
 	    gameMenu.getItem(1).setEnabled(true);
 	    gameMenu.getItem(2).setEnabled(true);
@@ -65,6 +93,7 @@ public class MineSweeperMenuHandler
 	}
 	else if (e.getActionCommand().equals("Re-Start Game")) {
 	    levelMenu.setEnabled(false);
+	    shapeMenu.setEnabled(false);
 	    gameMenu.getItem(0).setEnabled(false);
 	    gameMenu.getItem(1).setEnabled(true);
 	    gameMenu.getItem(2).setEnabled(true);
@@ -73,14 +102,71 @@ public class MineSweeperMenuHandler
 	}
 	else if (e.getActionCommand().equals("Reveal board")) {
 	    levelMenu.setEnabled(true);
+	    shapeMenu.setEnabled(true);
 	    gameMenu.getItem(0).setEnabled(true);
 	    gameMenu.getItem(1).setEnabled(false);
 	    gameMenu.getItem(2).setEnabled(false);
 	    MineSweeper.endGame();
 	    MineSweeper.revealBoard();
 	}
+	else if (shapeFor(e.getActionCommand()) != null) {
+	    MineSweeperTopology topology = shapeFor(e.getActionCommand());
+	    for (int i = 0; i < shapeMenu.getItemCount(); i++) {
+		JMenuItem item = shapeMenu.getItem(i);
+		item.setIcon(item.getText().equals(topology.getName()) ? FLAG_ICON : EMPTY_ICON);
+	    }
+	    MineSweeper.setTopology(topology);
+	    MineSweeper.makeNewBoard();
+	}
+	else if (e.getActionCommand().equals("Undo")) {
+	    MineSweeper.undo();
+	}
+	else if (e.getActionCommand().equals("Redo")) {
+	    MineSweeper.redo();
+	}
 	else if (e.getActionCommand().equals("Exit")) {
 	    System.exit(0);
 	}
     }
+
+    /**
+     * Find the topology a Shape menu item is named after.
+     *
+     * @param command the text of the menu item.
+     * @return the topology, or null if the item is not a shape.
+     */
+    private static MineSweeperTopology shapeFor(String command) {
+	for (MineSweeperTopology t : MineSweeperTopology.values()) {
+	    if (t.getName().equals(command)) {
+		return t;
+	    }
+	}
+	return null;
+    }
+
+    /**
+     * Ask the player for a number between min and max inclusive,
+     * asking again until a valid number is entered.
+     *
+     * @param prompt the question to show.
+     * @param min the smallest acceptable answer.
+     * @param max the largest acceptable answer.
+     * @return the number entered, or -1 if the player cancelled.
+     */
+    private int askFor(String prompt, int min, int max) {
+	while (true) {
+	    String answer = JOptionPane.showInputDialog(prompt + " (" + min + "-" + max + ")");
+	    if (answer == null) {
+		return -1;
+	    }
+	    try {
+		int value = Integer.parseInt(answer.trim());
+		if (value >= min && value <= max) {
+		    return value;
+		}
+	    }
+	    catch (NumberFormatException ex) {
+	    }
+	}
+    }
 }
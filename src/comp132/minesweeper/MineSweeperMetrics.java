@@ -0,0 +1,338 @@
+package comp132.minesweeper;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * MineSweeperMetrics measures the board operations and the drawing of
+ * the board: how long uncoverCell, flagCell, placing the mines and
+ * repainting take, how many cells each uncover opens and how often the
+ * state of the game is checked. The measurements are kept in log2
+ * histograms that can be read through JMX, under the name
+ * comp132.minesweeper:type=Metrics. While metrics are on, every
+ * operation is also sent to Java Flight Recorder as an event of the
+ * "Mine Sweeper" category if a recording is running; a recording made
+ * while they are off has no Mine Sweeper events.
+ *
+ * Metrics are switched off unless the minesweeper.metrics property is
+ * true, and can be switched on and off at any time through JMX or
+ * setEnabled. While they are off an instrumented operation costs a
+ * single read of a volatile field. While they are on it costs two
+ * calls to System.nanoTime and an atomic increment, without locking or
+ * allocating, so they can be left on in production.
+ *
+ * gameWon and gameLost are only counted, not timed: each is a few field
+ * reads, and timing them would cost many times more than the call.
+ */
+public class MineSweeperMetrics implements MineSweeperMetricsMBean {
+
+	private static final MineSweeperMetrics INSTANCE = new MineSweeperMetrics();
+
+	private static volatile boolean enabled = Boolean.getBoolean("minesweeper.metrics");
+
+	private final Histogram uncoverNanos = new Histogram();
+	private final Histogram cascadeCells = new Histogram();
+	private final Histogram flagNanos = new Histogram();
+	private final Histogram generateNanos = new Histogram();
+	private final Histogram paintNanos = new Histogram();
+	private final LongAdder gameStateChecks = new LongAdder();
+
+	static {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(
+				INSTANCE, new ObjectName("comp132.minesweeper:type=Metrics"));
+		}
+		catch (JMException e) {
+			// Another copy of this class, from another class loader, is
+			// already registered. This copy still records, but can only
+			// be read through getInstance.
+		}
+	}
+
+	private MineSweeperMetrics() {
+	}
+
+	/**
+	 * Get the metrics of this JVM.
+	 *
+	 * @return the metrics.
+	 */
+	public static MineSweeperMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean on) {
+		enabled = on;
+	}
+
+	public long[] getUncoverNanos() {
+		return uncoverNanos.get();
+	}
+
+	public long[] getCascadeCells() {
+		return cascadeCells.get();
+	}
+
+	public long[] getFlagNanos() {
+		return flagNanos.get();
+	}
+
+	public long[] getGenerateNanos() {
+		return generateNanos.get();
+	}
+
+	public long[] getPaintNanos() {
+		return paintNanos.get();
+	}
+
+	public long getGameStateChecks() {
+		return gameStateChecks.sum();
+	}
+
+	public String getSummary() {
+		return uncoverNanos.summary("uncover", "ns") + cascadeCells.summary("cascade", "cells")
+			+ flagNanos.summary("flag", "ns") + generateNanos.summary("generate", "ns")
+			+ paintNanos.summary("paint", "ns")
+			+ String.format("game state checks: %d%n", getGameStateChecks());
+	}
+
+	public void reset() {
+		uncoverNanos.reset();
+		cascadeCells.reset();
+		flagNanos.reset();
+		generateNanos.reset();
+		paintNanos.reset();
+		gameStateChecks.reset();
+	}
+
+	/**
+	 * Start timing an operation.
+	 *
+	 * @return the time to pass to the method that ends the operation, or
+	 *         0 if metrics are switched off.
+	 */
+	static long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * End the timing of uncoverCell.
+	 *
+	 * @param start the value returned by start.
+	 * @param row the row of the cell.
+	 * @param col the column of the cell.
+	 * @param cells the number of cells uncovered.
+	 */
+	static void uncovered(long start, int row, int col, int cells) {
+		if (start != 0) {
+			long nanos = System.nanoTime() - start;
+			INSTANCE.uncoverNanos.add(nanos);
+			INSTANCE.cascadeCells.add(cells);
+			UncoverEvent event = new UncoverEvent();
+			if (event.shouldCommit()) {
+				event.row = row;
+				event.col = col;
+				event.cells = cells;
+				event.nanos = nanos;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * End the timing of flagCell.
+	 *
+	 * @param start the value returned by start.
+	 * @param row the row of the cell.
+	 * @param col the column of the cell.
+	 */
+	static void flagged(long start, int row, int col) {
+		if (start != 0) {
+			long nanos = System.nanoTime() - start;
+			INSTANCE.flagNanos.add(nanos);
+			FlagEvent event = new FlagEvent();
+			if (event.shouldCommit()) {
+				event.row = row;
+				event.col = col;
+				event.nanos = nanos;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * End the timing of placing the mines on a board, at random or by
+	 * a MineSweeperGenerator.
+	 *
+	 * @param start the value returned by start.
+	 * @param rows the number of rows on the board.
+	 * @param cols the number of columns on the board.
+	 * @param mines the number of mines placed.
+	 */
+	static void generated(long start, int rows, int cols, int mines) {
+		if (start != 0) {
+			long nanos = System.nanoTime() - start;
+			INSTANCE.generateNanos.add(nanos);
+			GenerateEvent event = new GenerateEvent();
+			if (event.shouldCommit()) {
+				event.rows = rows;
+				event.cols = cols;
+				event.mines = mines;
+				event.nanos = nanos;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * End the timing of drawing part of a board.
+	 *
+	 * @param start the value returned by start.
+	 * @param cells the number of cells drawn.
+	 */
+	static void painted(long start, int cells) {
+		if (start != 0) {
+			long nanos = System.nanoTime() - start;
+			INSTANCE.paintNanos.add(nanos);
+			PaintEvent event = new PaintEvent();
+			if (event.shouldCommit()) {
+				event.cells = cells;
+				event.nanos = nanos;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * Count a call of gameWon or gameLost.
+	 */
+	static void gameStateChecked() {
+		if (enabled) {
+			INSTANCE.gameStateChecks.increment();
+		}
+	}
+
+	/**
+	 * A histogram with a bucket for each power of two that threads can
+	 * add to at once.
+	 */
+	private static class Histogram {
+		private final AtomicLongArray buckets = new AtomicLongArray(64);
+
+		void add(long value) {
+			buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(value, 1)));
+		}
+
+		long[] get() {
+			long[] counts = new long[buckets.length()];
+			for (int b = 0; b < counts.length; b++) {
+				counts[b] = buckets.get(b);
+			}
+			return counts;
+		}
+
+		void reset() {
+			for (int b = 0; b < buckets.length(); b++) {
+				buckets.set(b, 0);
+			}
+		}
+
+		/**
+		 * Describe the histogram on one line, giving each percentile as
+		 * the upper bound of its bucket.
+		 */
+		String summary(String name, String unit) {
+			long[] counts = get();
+			long total = 0;
+			int max = 0;
+			for (int b = 0; b < counts.length; b++) {
+				total += counts[b];
+				if (counts[b] > 0) {
+					max = b;
+				}
+			}
+			return String.format("%s: %d, p50 < %d %s, p99 < %d %s, max < %d %s%n",
+					     name, total, bound(counts, total, 0.5), unit,
+					     bound(counts, total, 0.99), unit, 2L << max, unit);
+		}
+
+		private static long bound(long[] counts, long total, double fraction) {
+			long seen = 0;
+			for (int b = 0; b < counts.length; b++) {
+				seen += counts[b];
+				if (seen > 0 && seen >= fraction * total) {
+					return 2L << b;
+				}
+			}
+			return 0;
+		}
+	}
+
+	@Name("comp132.minesweeper.Uncover")
+	@Label("Uncover Cell")
+	@Category("Mine Sweeper")
+	static class UncoverEvent extends Event {
+		@Label("Row")
+		int row;
+		@Label("Column")
+		int col;
+		@Label("Cells Uncovered")
+		int cells;
+		@Label("Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long nanos;
+	}
+
+	@Name("comp132.minesweeper.Flag")
+	@Label("Flag Cell")
+	@Category("Mine Sweeper")
+	static class FlagEvent extends Event {
+		@Label("Row")
+		int row;
+		@Label("Column")
+		int col;
+		@Label("Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long nanos;
+	}
+
+	@Name("comp132.minesweeper.Generate")
+	@Label("Place Mines")
+	@Category("Mine Sweeper")
+	static class GenerateEvent extends Event {
+		@Label("Rows")
+		int rows;
+		@Label("Columns")
+		int cols;
+		@Label("Mines")
+		int mines;
+		@Label("Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long nanos;
+	}
+
+	@Name("comp132.minesweeper.Paint")
+	@Label("Paint Board")
+	@Category("Mine Sweeper")
+	static class PaintEvent extends Event {
+		@Label("Cells Drawn")
+		int cells;
+		@Label("Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long nanos;
+	}
+}
@@ -0,0 +1,46 @@
+package comp132.minesweeper;
+
+/**
+ * The management interface of MineSweeperMetrics, as seen through JMX
+ * under the name comp132.minesweeper:type=Metrics.
+ *
+ * Every histogram has 64 buckets: bucket b counts the operations that
+ * took from 2^b to 2^(b+1) - 1 nanoseconds, or for the cascade sizes
+ * that uncovered from 2^b to 2^(b+1) - 1 cells.
+ */
+public interface MineSweeperMetricsMBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	long[] getUncoverNanos();
+
+	long[] getCascadeCells();
+
+	long[] getFlagNanos();
+
+	long[] getGenerateNanos();
+
+	long[] getPaintNanos();
+
+	/**
+	 * Get the number of times gameWon or gameLost has been asked.
+	 *
+	 * @return the number of checks.
+	 */
+	long getGameStateChecks();
+
+	/**
+	 * Get the count and the median, 99th percentile and largest bucket
+	 * of every histogram, one per line.
+	 *
+	 * @return the summary.
+	 */
+	String getSummary();
+
+	/**
+	 * Empty every histogram.
+	 */
+	void reset();
+}
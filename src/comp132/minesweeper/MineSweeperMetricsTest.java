@@ -0,0 +1,63 @@
+package comp132.minesweeper;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import javax.management.ObjectName;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class MineSweeperMetricsTest {
+
+	private static long total(long[] histogram) {
+		long total = 0;
+		for (long count : histogram) {
+			total += count;
+		}
+		return total;
+	}
+
+	@Test
+	public void testRecordsOnlyWhenEnabled() throws Exception {
+		MineSweeperMetrics metrics = MineSweeperMetrics.getInstance();
+		boolean wasEnabled = metrics.isEnabled();
+		try {
+			metrics.setEnabled(false);
+			metrics.reset();
+			MineSweeperBoard board = new MineSweeperBoard();
+			board.uncoverCell(2, 3);
+			board.flagCell(0, 0);
+			board.gameWon();
+			Assert.assertEquals(0, total(metrics.getUncoverNanos()));
+			Assert.assertEquals(0, metrics.getGameStateChecks());
+
+			metrics.setEnabled(true);
+			board = new MineSweeperBoard(20, 20, 40, new Random(1));
+			board.uncoverCell(0, 0);
+			board.uncoverCell(19, 19);
+			board.flagCell(5, 5);
+			board.gameWon();
+			board.gameLost();
+			metrics.setEnabled(false);
+			// The metrics belong to the whole JVM, so a pool generating
+			// boards in the background, whose generator plays each board
+			// through before handing it out, may add to every count.
+			Assert.assertTrue(total(metrics.getUncoverNanos()) >= 2);
+			Assert.assertTrue(total(metrics.getCascadeCells()) >= 2);
+			Assert.assertTrue(total(metrics.getFlagNanos()) >= 1);
+			Assert.assertTrue(total(metrics.getGenerateNanos()) >= 1);
+			Assert.assertTrue(metrics.getGameStateChecks() >= 2);
+
+			// The same numbers can be read through JMX.
+			long[] uncover = (long[]) ManagementFactory.getPlatformMBeanServer().getAttribute(
+				new ObjectName("comp132.minesweeper:type=Metrics"), "UncoverNanos");
+			Assert.assertTrue(total(uncover) >= 2);
+		}
+		finally {
+			metrics.reset();
+			metrics.setEnabled(wasEnabled);
+		}
+	}
+}
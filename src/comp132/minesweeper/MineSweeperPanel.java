@@ -1,91 +1,259 @@
 package comp132.minesweeper;
 
 import javax.swing.*;
+import javax.swing.border.Border;
 import java.awt.event.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 
+/**
+ * A MineSweeperPanel draws a MineSweeperBoard and turns mouse clicks
+ * into moves on it. The whole board is a single component: each cell is
+ * copied from a small atlas of pre-drawn tiles, and only the cells inside
+ * the area being repainted are drawn, so boards with millions of cells
+ * open quickly and scroll smoothly inside a JScrollPane.
+ */
 public class MineSweeperPanel
-	 extends JPanel
-	 implements MouseListener {
+	 extends JComponent
+	 implements MouseListener, MineSweeperBoardListener, Scrollable {
+
+	// Tiles 0 to 8 in the atlas are the uncovered numbers.
+	private static final int COVERED_TILE = 9;
+	private static final int FLAG_TILE = 10;
+	private static final int MINE_TILE = 11;
+	private static final int HIT_MINE_TILE = 12;
+	private static final int WRONG_MINE_TILE = 13;
+	private static final int REVEALED_FLAG_TILE = 14;
+	private static final int REVEALED_EMPTY_TILE = 15;
+	private static final int NUM_TILES = 16;
+
+	// The largest board area shown before scrolling, in cells.
+	private static final int VISIBLE_ROWS = 30;
+	private static final int VISIBLE_COLS = 40;
+
+	private static final Color BACKGROUND = new Color(155,153,156);
 
 	private MineSweeperBoard theBoard;
+	private MineSweeperJournal journal;
+	private boolean revealed;
+	// Set by a chord made with both buttons, so that releasing the
+	// second button does not also uncover or flag the cell.
+	private boolean chording;
+	private BufferedImage atlas;
+	private int cellSize;
+	// How far odd rows are drawn to the right, for the hexagonal grid.
+	private int oddRowShift;
+	private int atlasCellSize;
 
 	public MineSweeperPanel(MineSweeperBoard b) {
+		this(new MineSweeperJournal(b, 0));
+	}
+
+	/**
+	 * Construct a panel that makes its moves through a journal, so that
+	 * they are recorded and can be undone.
+	 *
+	 * @param j the journal of the board to draw.
+	 */
+	public MineSweeperPanel(MineSweeperJournal j) {
+
+		journal = j;
+		theBoard = j.getBoard();
+
+		setBackground(BACKGROUND);
+		setOpaque(true);
+		makeAtlas();
+		if (theBoard.getTopology().shiftsOddRows()) {
+			oddRowShift = cellSize / 2;
+		}
+		setPreferredSize(new Dimension(theBoard.getColumns() * cellSize + oddRowShift,
+					       theBoard.getRows() * cellSize));
+
+		addMouseListener(this);
+		theBoard.addBoardListener(this);
+	}
+
+	/**
+	 * Draw every tile once, with its bevel, into a single image.
+	 * The tiles look the same as the old one-button-per-cell board.
+	 * On a HiDPI screen the atlas is drawn at the screen's resolution
+	 * so that copying a tile does not blur it.
+	 */
+	private void makeAtlas() {
+		Border raised = BorderFactory.createRaisedBevelBorder();
+		Border lowered = BorderFactory.createLoweredBevelBorder();
+		Insets insets = raised.getBorderInsets(this);
+		cellSize = MineSweeperIcons.ICON_SIZE + insets.left + insets.right;
+		int scale = (int) Math.ceil(MineSweeperIcons.getScreenScale());
+		atlasCellSize = cellSize * scale;
+
+		atlas = MineSweeperIcons.compatibleImage(NUM_TILES * atlasCellSize, atlasCellSize);
+		Graphics2D g = atlas.createGraphics();
+		g.scale(scale, scale);
+		g.setColor(BACKGROUND);
+		g.fillRect(0, 0, NUM_TILES * cellSize, cellSize);
+		int iconSize = MineSweeperIcons.ICON_SIZE * scale;
+		for (int i = 0; i < MineSweeperIcons.NUMBERS.length; i++) {
+			drawTile(g, i, MineSweeperIcons.NUMBERS[i], iconSize, lowered, insets);
+		}
+		drawTile(g, COVERED_TILE, MineSweeperIcons.EMPTY, iconSize, raised, insets);
+		drawTile(g, FLAG_TILE, MineSweeperIcons.FLAG, iconSize, raised, insets);
+		drawTile(g, MINE_TILE, MineSweeperIcons.MINE, iconSize, lowered, insets);
+		drawTile(g, HIT_MINE_TILE, MineSweeperIcons.HIT_MINE, iconSize, lowered, insets);
+		drawTile(g, WRONG_MINE_TILE, MineSweeperIcons.WRONG_MINE, iconSize, lowered, insets);
+		drawTile(g, REVEALED_FLAG_TILE, MineSweeperIcons.FLAG, iconSize, lowered, insets);
+		drawTile(g, REVEALED_EMPTY_TILE, MineSweeperIcons.EMPTY, iconSize, lowered, insets);
+		g.dispose();
+	}
 
-		theBoard = b;
+	private void drawTile(Graphics2D g, int tile, String icon, int iconSize,
+			      Border border, Insets insets) {
+		int x = tile * cellSize;
+		g.drawImage(MineSweeperIcons.getImage(icon, iconSize), x + insets.left, insets.top,
+			    MineSweeperIcons.ICON_SIZE, MineSweeperIcons.ICON_SIZE, null);
+		border.paintBorder(this, g, x, 0, cellSize, cellSize);
+	}
 
-		int rows = b.getRows();
-		int cols = b.getColumns();
+	/**
+	 * Get the tile showing a cell while the game is being played.
+	 */
+	private static int playingTile(int cell) {
+		switch (cell) {
+		case MineSweeperBoard.COVERED_CELL:   return COVERED_TILE;
+		case MineSweeperBoard.MINE:           return COVERED_TILE;
+		case MineSweeperBoard.FLAG:           return FLAG_TILE;
+		case MineSweeperBoard.FLAGGED_MINE:   return FLAG_TILE;
+		case MineSweeperBoard.UNCOVERED_MINE: return MINE_TILE;
+		default:                              return cell;
+		}
+	}
+
+	/**
+	 * Get the tile showing a cell once the board has been revealed.
+	 */
+	private static int revealTile(int cell) {
+		switch (cell) {
+		case MineSweeperBoard.COVERED_CELL:   return REVEALED_EMPTY_TILE;
+		case MineSweeperBoard.MINE:           return MINE_TILE;
+		case MineSweeperBoard.FLAG:           return WRONG_MINE_TILE;
+		case MineSweeperBoard.FLAGGED_MINE:   return REVEALED_FLAG_TILE;
+		case MineSweeperBoard.UNCOVERED_MINE: return HIT_MINE_TILE;
+		default:                              return cell;
+		}
+	}
 
-		setLayout(new GridLayout(rows, cols));
-		for (int r = 0; r < rows; r++) {
-			for (int c = 0; c < cols; c++) {
-				JButton but = new MineSweeperButton(r, c);
-				add(but);
-				but.addMouseListener(this);
+	protected void paintComponent(Graphics g) {
+		long start = MineSweeperMetrics.start();
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		}
+		g.setColor(getBackground());
+		g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+		int firstRow = Math.max(clip.y / cellSize, 0);
+		int firstCol = Math.max((clip.x - oddRowShift) / cellSize, 0);
+		int lastRow = Math.min((clip.y + clip.height - 1) / cellSize, theBoard.getRows() - 1);
+		int lastCol = Math.min((clip.x + clip.width - 1) / cellSize, theBoard.getColumns() - 1);
+		for (int r = firstRow; r <= lastRow; r++) {
+			int y = r * cellSize;
+			for (int c = firstCol; c <= lastCol; c++) {
+				int cell = theBoard.getCell(r, c);
+				int tile = revealed ? revealTile(cell) : playingTile(cell);
+				int x = c * cellSize + (r & 1) * oddRowShift;
+				int sx = tile * atlasCellSize;
+				g.drawImage(atlas, x, y, x + cellSize, y + cellSize,
+					    sx, 0, sx + atlasCellSize, atlasCellSize, null);
 			}
 		}
+		MineSweeperMetrics.painted(start, Math.max(lastRow - firstRow + 1, 0)
+					   * Math.max(lastCol - firstCol + 1, 0));
 	}
 
 	public void revealBoard() {
-		// iterate through all of the components
-		// turn them into MineSweeperButtons and
-		// set their icons according to the board.
-		Component[] c = getComponents();
-		for (int i = 0; i < c.length; i++) {
-			MineSweeperButton b = (MineSweeperButton) c[i];
-			b.setRevealIcon(theBoard.getCell(b.getRow(), b.getCol()));
+		revealed = true;
+		repaint();
+	}
+
+	public void cellsChanged(MineSweeperBoard board, CellList changed) {
+		// Repaint the smallest rectangle holding every changed cell.
+		// Swing merges all of the repaints asked for while handling one
+		// event, so they are drawn together in a single pass.
+		int minRow = Integer.MAX_VALUE;
+		int minCol = Integer.MAX_VALUE;
+		int maxRow = -1;
+		int maxCol = -1;
+		for (int i = 0; i < changed.size(); i++) {
+			minRow = Math.min(minRow, changed.getRow(i));
+			maxRow = Math.max(maxRow, changed.getRow(i));
+			minCol = Math.min(minCol, changed.getCol(i));
+			maxCol = Math.max(maxCol, changed.getCol(i));
+		}
+		if (maxRow >= 0) {
+			repaint(minCol * cellSize, minRow * cellSize,
+				(maxCol - minCol + 1) * cellSize + oddRowShift,
+				(maxRow - minRow + 1) * cellSize);
 		}
 	}
 
+	public void boardChanged(MineSweeperBoard board) {
+		repaint();
+	}
+
 	public void mouseClicked(MouseEvent e) {
 
-		try {
-			if (theBoard.gameLost() || theBoard.gameWon()) {
-				MineSweeper.reStartGameOnClick();
+		int mod = e.getModifiers();
+		boolean button1 = (mod & InputEvent.BUTTON1_MASK) != 0;
+		boolean button2 = e.getButton() == MouseEvent.BUTTON2;
+		boolean button3 = (mod & InputEvent.BUTTON3_MASK) != 0;
+		// The buttons still held down when this one was released.
+		int held = e.getModifiersEx();
+		boolean both = (button1 && (held & InputEvent.BUTTON3_DOWN_MASK) != 0)
+			|| (button3 && (held & InputEvent.BUTTON1_DOWN_MASK) != 0);
+
+		if (chording && !both) {
+			chording = false;
+		}
+		else if (theBoard.gameLost() || theBoard.gameWon()) {
+			chording = both;
+			MineSweeper.reStartGameOnClick();
+		}
+		else {
+			int row = e.getY() / cellSize;
+			int x = e.getX() - (row & 1) * oddRowShift;
+			int col = x / cellSize;
+			if (row >= theBoard.getRows() || x < 0 || col >= theBoard.getColumns()) {
+				return;
 			}
-			else {
-				if (!MineSweeper.isGameOn()) {
-					MineSweeper.startGameOnClick();
-				}
-
-				MineSweeperButton b = (MineSweeperButton) (e.getSource());
-				int row = b.getRow();
-				int col = b.getCol();
-
-				int mod = e.getModifiers();
-				boolean button1 = (mod & InputEvent.BUTTON1_MASK) != 0;
-				boolean button3 = (mod & InputEvent.BUTTON3_MASK) != 0;
-
-				if (button1) {
-					// 1.4.1 stuff: e.getButton() == MouseEvent.BUTTON1) {
-					theBoard.uncoverCell(row, col);
-
-					// Update the entire board because the bonus questions
-					// require it.
-					Component[] c = getComponents();
-					for (int i = 0; i < c.length; i++) {
-						MineSweeperButton tb = (MineSweeperButton) c[i];
-						tb.setPlayingIcon(theBoard.getCell(tb.getRow(), tb.getCol()));
-					}
-
-					//b.setPlayingIcon(theBoard.getCell(row, col));
-				}
-				else if (button3) {
-					// 1.4.1 stuff: e.getButton() == MouseEvent.BUTTON3) {
-					theBoard.flagCell(row, col);
-					b.setPlayingIcon(theBoard.getCell(row, col));
-				}
-
-				if (theBoard.gameWon()) {
-					MineSweeper.gameWasWon();
-				}
-				else if (theBoard.gameLost()) {
-					MineSweeper.gameWasLost();
-				}
+
+			if (!MineSweeper.isGameOn()) {
+				MineSweeper.startGameOnClick();
+			}
+
+			// The board tells this panel which cells changed, and
+			// only those cells are repainted. Every move goes through
+			// the journal so that it is recorded.
+			if (button2 || both) {
+				// A chord uncovers every neighbour of a satisfied
+				// number at once.
+				chording = both;
+				journal.chord(row, col);
+			}
+			else if (button1) {
+				// 1.4.1 stuff: e.getButton() == MouseEvent.BUTTON1) {
+				journal.uncover(row, col);
+			}
+			else if (button3) {
+				// 1.4.1 stuff: e.getButton() == MouseEvent.BUTTON3) {
+				journal.flag(row, col);
+			}
+
+			if (theBoard.gameWon()) {
+				MineSweeper.gameWasWon();
+			}
+			else if (theBoard.gameLost()) {
+				MineSweeper.gameWasLost();
 			}
-		}
-		catch (ClassCastException e2) {
 		}
 	}
 
@@ -96,9 +264,40 @@ public class MineSweeperPanel
 	}
 
 	public void mousePressed(MouseEvent e) {
+		// A chord whose second release was lost, for instance by
+		// dragging, ends when a new click begins.
+		int buttons = InputEvent.BUTTON1_DOWN_MASK | InputEvent.BUTTON2_DOWN_MASK
+			| InputEvent.BUTTON3_DOWN_MASK;
+		if (Integer.bitCount(e.getModifiersEx() & buttons) == 1) {
+			chording = false;
+		}
 	}
 
 	public void mouseReleased(MouseEvent e) {
 	}
-}
 
+	public Dimension getPreferredScrollableViewportSize() {
+		Dimension size = getPreferredSize();
+		return new Dimension(Math.min(size.width, VISIBLE_COLS * cellSize),
+				     Math.min(size.height, VISIBLE_ROWS * cellSize));
+	}
+
+	public int getScrollableUnitIncrement(Rectangle visible, int orientation,
+					      int direction) {
+		return cellSize;
+	}
+
+	public int getScrollableBlockIncrement(Rectangle visible, int orientation,
+					       int direction) {
+		int extent = orientation == SwingConstants.VERTICAL ? visible.height : visible.width;
+		return Math.max(cellSize, extent - cellSize);
+	}
+
+	public boolean getScrollableTracksViewportWidth() {
+		return false;
+	}
+
+	public boolean getScrollableTracksViewportHeight() {
+		return false;
+	}
+}
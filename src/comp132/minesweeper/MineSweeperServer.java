@@ -0,0 +1,419 @@
+package comp132.minesweeper;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A MineSweeperServer hosts many independent games without a window,
+ * using only the HTTP server that comes with the JDK. Every request is
+ * a GET with its arguments in the query string, and every answer is
+ * plain text:
+ * <pre>
+ * /new?level=3                    start a game at a level of play
+ * /new?rows=R&amp;cols=C&amp;mines=M[&amp;seed=S]   start a custom game
+ * /uncover?session=ID&amp;row=R&amp;col=C  uncover a cell
+ * /flag?session=ID&amp;row=R&amp;col=C     place or remove a flag
+ * /show?session=ID                show the board
+ * /end?session=ID                 end a game
+ * </pre>
+ * Requests are handled on virtual threads when the JVM has them and on
+ * a thread pool otherwise. Each session runs its own moves in order.
+ *
+ * The server only listens on the loopback address. It hosts at most
+ * MAX_SESSIONS games of at most MAX_SESSION_CELLS cells each, and ends
+ * a game that has had no request for IDLE_MINUTES. A bad request is
+ * answered with status 400, a new game while the server is full with
+ * 503 and a move that fails with 500.
+ *
+ * Run the server with
+ * <pre>
+ * java comp132.minesweeper.MineSweeperServer serve [port]
+ * </pre>
+ * and measure how many moves per second it sustains with
+ * <pre>
+ * java comp132.minesweeper.MineSweeperServer load [port] [sessions] [seconds]
+ * </pre>
+ */
+public class MineSweeperServer {
+
+	static final int MAX_SESSIONS = 4096;
+	static final int MAX_SESSION_CELLS = 1 << 16;
+	static final int IDLE_MINUTES = 10;
+
+	private final int maxSessions;
+	private final int maxSessionCells;
+	private final long idleNanos;
+
+	private final Map<String, MineSweeperSession> sessions =
+		new ConcurrentHashMap<String, MineSweeperSession>();
+	private final AtomicLong nextId = new AtomicLong();
+	private final ExecutorService requestExecutor = newExecutor();
+	private final ExecutorService moveExecutor = newExecutor();
+	private HttpServer server;
+	private ScheduledExecutorService reaper;
+
+	/**
+	 * Construct a server with the default limits.
+	 */
+	public MineSweeperServer() {
+		this(MAX_SESSIONS, MAX_SESSION_CELLS, TimeUnit.MINUTES.toMillis(IDLE_MINUTES));
+	}
+
+	/**
+	 * pre: maxSessions > 0 && maxSessionCells > 0 && idleMillis >= 0
+	 *
+	 * Construct a server with the given limits.
+	 *
+	 * @param maxSessions the most games hosted at once.
+	 * @param maxSessionCells the most cells on the board of a game.
+	 * @param idleMillis the time after its last request that a game is
+	 *        ended.
+	 */
+	MineSweeperServer(int maxSessions, int maxSessionCells, long idleMillis) {
+		assert maxSessions > 0 && maxSessionCells > 0 && idleMillis >= 0 : "invalid limits";
+		this.maxSessions = maxSessions;
+		this.maxSessionCells = maxSessionCells;
+		this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+	}
+
+	/**
+	 * Start serving on the given port.
+	 *
+	 * @param port the port to listen on, or 0 for any free port.
+	 */
+	public void start(int port) throws IOException {
+		// Small answers are otherwise held back by Nagle's algorithm,
+		// adding tens of milliseconds to every move.
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+					   1024);
+		server.setExecutor(requestExecutor);
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange);
+			}
+		});
+		server.start();
+		reaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "MineSweeperServer reaper");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		reaper.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				endIdleSessions();
+			}
+		}, 1, 1, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Get the port the server is listening on.
+	 *
+	 * @return the port.
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Stop serving and end every session.
+	 */
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			reaper.shutdown();
+		}
+		requestExecutor.shutdown();
+		moveExecutor.shutdown();
+		sessions.clear();
+	}
+
+	/**
+	 * Get the number of games being hosted.
+	 *
+	 * @return the number of sessions.
+	 */
+	public int getSessionCount() {
+		return sessions.size();
+	}
+
+	private void respond(HttpExchange exchange) throws IOException {
+		int status = 200;
+		String body;
+		try {
+			body = handle(exchange.getRequestURI().getPath(),
+				      parseQuery(exchange.getRequestURI().getRawQuery()));
+		}
+		catch (IllegalArgumentException e) {
+			status = 400;
+			body = e.getMessage();
+		}
+		catch (RejectedExecutionException e) {
+			status = 503;
+			body = e.getMessage();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			status = 503;
+			body = "interrupted";
+		}
+		catch (RuntimeException e) {
+			status = 500;
+			body = "failed: " + e.getMessage();
+		}
+		byte[] bytes = (body + "\n").getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	/**
+	 * Carry out one request.
+	 *
+	 * @param path the request path, such as /uncover.
+	 * @param args the query arguments.
+	 * @return the text of the answer.
+	 * @throws IllegalArgumentException if the request is not valid.
+	 * @throws RejectedExecutionException if the server is already
+	 *         hosting as many games as it may.
+	 * @throws IllegalStateException if a move failed.
+	 */
+	String handle(String path, Map<String, String> args) throws InterruptedException {
+		if (path.equals("/new")) {
+			MineSweeperBoard board = newBoard(args, maxSessionCells);
+			String id = Long.toString(nextId.incrementAndGet());
+			synchronized (sessions) {
+				if (sessions.size() >= maxSessions) {
+					endIdleSessions();
+					if (sessions.size() >= maxSessions) {
+						throw new RejectedExecutionException("too many sessions");
+					}
+				}
+				sessions.put(id, new MineSweeperSession(id, board, moveExecutor));
+			}
+			return "session=" + id + " rows=" + board.getRows()
+				+ " cols=" + board.getColumns();
+		}
+		MineSweeperSession session = sessions.get(arg(args, "session"));
+		if (session == null) {
+			throw new IllegalArgumentException("no such session");
+		}
+		if (path.equals("/uncover")) {
+			return session.uncover(intArg(args, "row"), intArg(args, "col"));
+		} else if (path.equals("/flag")) {
+			return session.flag(intArg(args, "row"), intArg(args, "col"));
+		} else if (path.equals("/show")) {
+			return session.show();
+		} else if (path.equals("/end")) {
+			sessions.remove(session.getId());
+			return "ended after " + session.getElapsedTime() + " ms";
+		}
+		throw new IllegalArgumentException("unknown request " + path);
+	}
+
+	/**
+	 * End every session that has had no request for the idle time.
+	 */
+	void endIdleSessions() {
+		for (MineSweeperSession session : sessions.values()) {
+			if (session.getIdleNanos() > idleNanos) {
+				sessions.remove(session.getId());
+			}
+		}
+	}
+
+	/**
+	 * Make the board for a new game. A game without a seed gets a board
+	 * whose mines are placed away from the first cell uncovered; with a
+	 * seed the mines are placed at once, so the seed alone decides them.
+	 */
+	private static MineSweeperBoard newBoard(Map<String, String> args, int maxCells) {
+		Random rnd = args.containsKey("seed") ? new Random(Long.parseLong(args.get("seed")))
+			: null;
+		if (args.containsKey("level")) {
+			int level = intArg(args, "level");
+			if (level < MineSweeperBoard.BEGINNER_LEVEL || level > MineSweeperBoard.EXPERT_LEVEL) {
+				throw new IllegalArgumentException("invalid level");
+			}
+			return rnd == null ? new MineSweeperBoard(level) : new MineSweeperBoard(level, rnd);
+		}
+		int rows = intArg(args, "rows");
+		int cols = intArg(args, "cols");
+		int mines = intArg(args, "mines");
+		if (rows <= 0 || cols <= 0 || mines < 0) {
+			throw new IllegalArgumentException("invalid board size");
+		} else if ((long) rows * cols > maxCells) {
+			throw new IllegalArgumentException("board larger than " + maxCells + " cells");
+		} else if (mines > rows * cols) {
+			throw new IllegalArgumentException("invalid board size");
+		}
+		return rnd == null ? new MineSweeperBoard(rows, cols, mines)
+			: new MineSweeperBoard(rows, cols, mines, rnd);
+	}
+
+	private static String arg(Map<String, String> args, String name) {
+		String value = args.get(name);
+		if (value == null) {
+			throw new IllegalArgumentException("missing " + name);
+		}
+		return value;
+	}
+
+	private static int intArg(Map<String, String> args, String name) {
+		try {
+			return Integer.parseInt(arg(args, name));
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid " + name);
+		}
+	}
+
+	private static Map<String, String> parseQuery(String query) {
+		Map<String, String> args = new HashMap<String, String>();
+		if (query != null) {
+			for (String pair : query.split("&")) {
+				int eq = pair.indexOf('=');
+				if (eq > 0) {
+					args.put(pair.substring(0, eq), pair.substring(eq + 1));
+				}
+			}
+		}
+		return args;
+	}
+
+	/**
+	 * Make an executor that starts a virtual thread per task when the
+	 * JVM supports them, or a thread pool otherwise.
+	 */
+	private static ExecutorService newExecutor() {
+		try {
+			return (ExecutorService) Executors.class
+				.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (Exception e) {
+			return Executors.newFixedThreadPool(
+				4 * Runtime.getRuntime().availableProcessors());
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		String mode = args.length > 0 ? args[0] : "serve";
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 8132;
+		if (mode.equals("load")) {
+			int numSessions = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+			int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+			load(port, numSessions, seconds);
+		} else {
+			MineSweeperServer server = new MineSweeperServer();
+			server.start(port);
+			System.out.println("Mine Sweeper server listening on port " + server.getPort());
+		}
+	}
+
+	/**
+	 * Play random moves on many sessions at once for a while and print
+	 * the number of moves per second the server answered.
+	 */
+	private static void load(final int port, int numSessions, final int seconds)
+			throws Exception {
+		final AtomicLong moves = new AtomicLong();
+		final AtomicLong errors = new AtomicLong();
+		final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		ExecutorService clients = Executors.newFixedThreadPool(numSessions);
+		for (int i = 0; i < numSessions; i++) {
+			final long seed = i;
+			clients.execute(new Runnable() {
+				public void run() {
+					Random rnd = new Random(seed);
+					String session = null;
+					while (System.nanoTime() < end) {
+						try {
+							if (session == null) {
+								String answer = get(port, "/new?level=3&seed=" + rnd.nextLong());
+								if (answer == null) {
+									errors.incrementAndGet();
+									continue;
+								}
+								session = answer.substring("session=".length(), answer.indexOf(' '));
+							}
+							String move = rnd.nextInt(5) == 0 ? "/flag" : "/uncover";
+							String answer = get(port, move + "?session=" + session
+									    + "&row=" + rnd.nextInt(15) + "&col=" + rnd.nextInt(20));
+							if (answer == null) {
+								// The session may have been ended for being
+								// idle; start another.
+								errors.incrementAndGet();
+								session = null;
+								continue;
+							}
+							moves.incrementAndGet();
+							if (!answer.contains("playing")) {
+								get(port, "/end?session=" + session);
+								session = null;
+							}
+						}
+						catch (IOException e) {
+							errors.incrementAndGet();
+							session = null;
+						}
+					}
+				}
+			});
+		}
+		clients.shutdown();
+		clients.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+		System.out.println(moves.get() / seconds + " moves per second over "
+				   + numSessions + " sessions, " + errors.get() + " errors");
+	}
+
+	/**
+	 * Make a request of the server and read the answer.
+	 *
+	 * @return the answer, or null if the server answered with an error
+	 *         status.
+	 */
+	static String get(int port, String request) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection)
+			new URL("http://127.0.0.1:" + port + request).openConnection();
+		int status = connection.getResponseCode();
+		// The answer to an error is read too, so the connection can be
+		// used again.
+		InputStream in = status < 400 ? connection.getInputStream()
+			: connection.getErrorStream();
+		StringBuilder text = new StringBuilder();
+		if (in != null) {
+			int c;
+			while ((c = in.read()) != -1) {
+				text.append((char) c);
+			}
+			in.close();
+		}
+		return status < 400 ? text.toString().trim() : null;
+	}
+}
@@ -0,0 +1,225 @@
+package comp132.minesweeper;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class MineSweeperServerTest {
+
+	private static Map<String, String> args(String... pairs) {
+		Map<String, String> args = new HashMap<String, String>();
+		for (int i = 0; i < pairs.length; i += 2) {
+			args.put(pairs[i], pairs[i + 1]);
+		}
+		return args;
+	}
+
+	private static String newSession(MineSweeperServer server, String... pairs)
+			throws InterruptedException {
+		String answer = server.handle("/new", args(pairs));
+		return answer.substring("session=".length(), answer.indexOf(' '));
+	}
+
+	private static void assertRejected(MineSweeperServer server, String path,
+					   Map<String, String> args) throws InterruptedException {
+		try {
+			server.handle(path, args);
+			Assert.fail(path + " " + args + " was accepted");
+		}
+		catch (IllegalArgumentException e) {
+			// The server answers 400.
+		}
+	}
+
+	@Test
+	public void testPlayGame() throws InterruptedException {
+		MineSweeperServer server = new MineSweeperServer();
+		try {
+			String answer = server.handle("/new", args("rows", "4", "cols", "5", "mines", "1",
+								   "seed", "9"));
+			Assert.assertTrue(answer.endsWith(" rows=4 cols=5"));
+			String id = answer.substring("session=".length(), answer.indexOf(' '));
+			Assert.assertEquals(1, server.getSessionCount());
+
+			MineSweeperBoard board = new MineSweeperBoard(4, 5, 1, new java.util.Random(9));
+			int mineRow = 0;
+			int mineCol = 0;
+			for (int r = 0; r < 4; r++) {
+				for (int c = 0; c < 5; c++) {
+					if (board.getCell(r, c) == MineSweeperBoard.MINE) {
+						mineRow = r;
+						mineCol = c;
+					}
+				}
+			}
+			Assert.assertEquals("changed=1 state=playing",
+					    server.handle("/flag", args("session", id, "row", "" + mineRow,
+									"col", "" + mineCol)));
+			String show = server.handle("/show", args("session", id));
+			Assert.assertEquals('F', show.charAt(mineRow * 6 + mineCol));
+			Assert.assertEquals(20 - 1, show.replace("\n", "").replace("F", "").length());
+
+			// Uncover every cell still covered but the mine, which wins.
+			answer = null;
+			int uncovered = 0;
+			for (int r = 0; r < 4; r++) {
+				for (int c = 0; c < 5; c++) {
+					show = server.handle("/show", args("session", id));
+					if (show.charAt(r * 6 + c) == '#') {
+						answer = server.handle("/uncover", args("session", id, "row", "" + r,
+											"col", "" + c));
+						uncovered += Integer.parseInt(answer.substring("changed=".length(),
+											       answer.indexOf(' ')));
+					}
+				}
+			}
+			Assert.assertTrue(answer.endsWith(" state=won"));
+			Assert.assertEquals(19, uncovered);
+			Assert.assertFalse(server.handle("/show", args("session", id)).contains("#"));
+
+			Assert.assertTrue(server.handle("/end", args("session", id)).startsWith("ended after "));
+			Assert.assertEquals(0, server.getSessionCount());
+			assertRejected(server, "/show", args("session", id));
+		}
+		finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testBadRequests() throws InterruptedException {
+		MineSweeperServer server = new MineSweeperServer();
+		try {
+			String id = newSession(server, "level", "1");
+			assertRejected(server, "/uncover", args("session", "nope", "row", "0", "col", "0"));
+			assertRejected(server, "/show", args());
+			assertRejected(server, "/uncover", args("session", id, "row", "x", "col", "0"));
+			assertRejected(server, "/flag", args("session", id, "row", "0"));
+			assertRejected(server, "/jump", args("session", id));
+			assertRejected(server, "/new", args("level", "4"));
+			assertRejected(server, "/new", args("rows", "3", "cols", "3", "mines", "10"));
+			assertRejected(server, "/new", args("rows", "0", "cols", "3", "mines", "0"));
+			assertRejected(server, "/new", args("rows", "1000", "cols", "1000", "mines", "1"));
+
+			// Cells off the board are refused before they reach the board.
+			assertRejected(server, "/uncover", args("session", id, "row", "5", "col", "0"));
+			assertRejected(server, "/uncover", args("session", id, "row", "0", "col", "-1"));
+			assertRejected(server, "/flag", args("session", id, "row", "0", "col", "10"));
+			Assert.assertTrue(server.handle("/show", args("session", id)).startsWith("##########\n"));
+		}
+		finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testSessionLimits() throws InterruptedException {
+		MineSweeperServer server = new MineSweeperServer(2, 100, 60000);
+		try {
+			newSession(server, "level", "1");
+			newSession(server, "level", "1");
+			try {
+				newSession(server, "level", "1");
+				Assert.fail("a third session was started");
+			}
+			catch (RejectedExecutionException e) {
+				// The server answers 503.
+			}
+			assertRejected(server, "/new", args("rows", "10", "cols", "11", "mines", "1"));
+			Assert.assertEquals(2, server.getSessionCount());
+		}
+		finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testIdleSessionsEnd() throws InterruptedException {
+		MineSweeperServer server = new MineSweeperServer(1, 100, 0);
+		try {
+			String first = newSession(server, "level", "1");
+			Thread.sleep(2);
+			// The server is full, so the idle session is ended to make room.
+			String second = newSession(server, "level", "1");
+			Assert.assertEquals(1, server.getSessionCount());
+			assertRejected(server, "/show", args("session", first));
+			Thread.sleep(2);
+			server.endIdleSessions();
+			Assert.assertEquals(0, server.getSessionCount());
+			assertRejected(server, "/show", args("session", second));
+		}
+		finally {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testHttpStatus() throws IOException {
+		MineSweeperServer server = new MineSweeperServer(1, 100, 60000);
+		try {
+			server.start(0);
+			String base = "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":"
+				+ server.getPort();
+			Assert.assertEquals(200, status(base + "/new?level=1"));
+			Assert.assertEquals(503, status(base + "/new?level=1"));
+			Assert.assertEquals(400, status(base + "/uncover?session=1&row=9&col=0"));
+			Assert.assertEquals(400, status(base + "/show?session=2"));
+			Assert.assertEquals(200, status(base + "/uncover?session=1&row=0&col=0"));
+
+			// The load test reads the status rather than failing on errors.
+			Assert.assertNull(MineSweeperServer.get(server.getPort(), "/show?session=2"));
+			Assert.assertTrue(MineSweeperServer.get(server.getPort(), "/show?session=1").length() > 0);
+		}
+		finally {
+			server.stop();
+		}
+	}
+
+	// A queue left marked as running would make the next move wait forever.
+	@Test(timeout = 10000)
+	public void testRejectedMoveDoesNotStallSession() throws InterruptedException {
+		// An executor that turns down its first task and runs the rest
+		// on the calling thread.
+		Executor executor = new Executor() {
+			private boolean rejected;
+
+			public void execute(Runnable task) {
+				if (!rejected) {
+					rejected = true;
+					throw new RejectedExecutionException("busy");
+				}
+				task.run();
+			}
+		};
+		MineSweeperSession session = new MineSweeperSession("1",
+			new MineSweeperBoard(4, 5, 1, new java.util.Random(9)), executor);
+		try {
+			session.flag(0, 0);
+			Assert.fail("the rejected move was made");
+		}
+		catch (RejectedExecutionException e) {
+			// The server answers 503.
+		}
+		Assert.assertEquals("changed=1 state=playing", session.flag(0, 0));
+		Assert.assertTrue(session.show().startsWith("F####\n"));
+	}
+
+	private static int status(String url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		try {
+			return connection.getResponseCode();
+		}
+		finally {
+			connection.disconnect();
+		}
+	}
+}
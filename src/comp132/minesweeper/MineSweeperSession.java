@@ -0,0 +1,202 @@
+package comp132.minesweeper;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A MineSweeperSession is one game hosted by a MineSweeperServer. The
+ * board is not thread-safe, so every move on a session goes through the
+ * session's own queue and the moves of a session run one at a time, in
+ * the order they arrived. The queue borrows a thread from a shared
+ * executor only while it has work, so idle sessions cost no threads.
+ */
+public class MineSweeperSession {
+
+	private final String id;
+	private final MineSweeperBoard board;
+	private final Executor executor;
+	private final long startTime;
+	private volatile long lastUsed;
+
+	private final Queue<Runnable> moves = new ArrayDeque<Runnable>();
+	private boolean running;
+
+	/**
+	 * Construct a session playing the given board.
+	 *
+	 * @param id the session id.
+	 * @param board the board being played.
+	 * @param executor the shared executor that runs the moves.
+	 */
+	public MineSweeperSession(String id, MineSweeperBoard board, Executor executor) {
+		this.id = id;
+		this.board = board;
+		this.executor = executor;
+		this.startTime = System.currentTimeMillis();
+		this.lastUsed = System.nanoTime();
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * Get the time since this session was started.
+	 *
+	 * @return the elapsed time in milliseconds.
+	 */
+	public long getElapsedTime() {
+		return System.currentTimeMillis() - startTime;
+	}
+
+	/**
+	 * Get the time since the last move, or since this session was
+	 * started if there has been none.
+	 *
+	 * @return the idle time in nanoseconds.
+	 */
+	public long getIdleNanos() {
+		return System.nanoTime() - lastUsed;
+	}
+
+	/**
+	 * Uncover a cell, waiting until the move has been made.
+	 *
+	 * @param row the row of the cell.
+	 * @param col the column of the cell.
+	 * @return a one line description of the result.
+	 * @throws IllegalArgumentException if the cell is not on the board.
+	 */
+	public String uncover(final int row, final int col) throws InterruptedException {
+		checkCell(row, col);
+		return run(new Callable<String>() {
+			public String call() {
+				int changed = board.uncoverCell(row, col).size();
+				return describe(changed);
+			}
+		});
+	}
+
+	/**
+	 * Place or remove a flag, waiting until the move has been made.
+	 *
+	 * @param row the row of the cell.
+	 * @param col the column of the cell.
+	 * @return a one line description of the result.
+	 * @throws IllegalArgumentException if the cell is not on the board.
+	 */
+	public String flag(final int row, final int col) throws InterruptedException {
+		checkCell(row, col);
+		return run(new Callable<String>() {
+			public String call() {
+				int before = board.getCell(row, col);
+				board.flagCell(row, col);
+				return describe(before == board.getCell(row, col) ? 0 : 1);
+			}
+		});
+	}
+
+	/**
+	 * Describe the whole board, one line per row, using the same
+	 * letters a player would see: '#' covered, 'F' flag, '*' uncovered
+	 * mine and a digit for an uncovered number.
+	 *
+	 * @return the board as text.
+	 */
+	public String show() throws InterruptedException {
+		return run(new Callable<String>() {
+			public String call() {
+				StringBuilder text = new StringBuilder();
+				for (int r = 0; r < board.getRows(); r++) {
+					for (int c = 0; c < board.getColumns(); c++) {
+						int cell = board.getCell(r, c);
+						if (cell >= 0) {
+							text.append((char) ('0' + cell));
+						} else if (cell == MineSweeperBoard.FLAG
+								|| cell == MineSweeperBoard.FLAGGED_MINE) {
+							text.append('F');
+						} else if (cell == MineSweeperBoard.UNCOVERED_MINE) {
+							text.append('*');
+						} else {
+							text.append('#');
+						}
+					}
+					text.append('\n');
+				}
+				return text.toString();
+			}
+		});
+	}
+
+	private void checkCell(int row, int col) {
+		if (row < 0 || row >= board.getRows() || col < 0 || col >= board.getColumns()) {
+			throw new IllegalArgumentException("no cell " + row + "," + col);
+		}
+	}
+
+	private String describe(int changed) {
+		String state = board.gameLost() ? "lost" : board.gameWon() ? "won" : "playing";
+		return "changed=" + changed + " state=" + state;
+	}
+
+	/**
+	 * Queue a move behind the earlier moves on this session and wait
+	 * for its result.
+	 *
+	 * @throws IllegalStateException if the move failed.
+	 * @throws RejectedExecutionException if the executor would not take
+	 *         the queue; the move is dropped and the next one tries again.
+	 */
+	private String run(Callable<String> move) throws InterruptedException {
+		lastUsed = System.nanoTime();
+		FutureTask<String> task = new FutureTask<String>(move);
+		synchronized (this) {
+			moves.add(task);
+			if (!running) {
+				running = true;
+				try {
+					executor.execute(new Runnable() {
+						public void run() {
+							drain();
+						}
+					});
+				}
+				catch (RejectedExecutionException e) {
+					// Nothing else was queued, or the queue would have
+					// been running.
+					moves.clear();
+					running = false;
+					throw e;
+				}
+			}
+		}
+		try {
+			return task.get();
+		}
+		catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Run queued moves until the queue is empty.
+	 */
+	private void drain() {
+		while (true) {
+			Runnable next;
+			synchronized (this) {
+				next = moves.poll();
+				if (next == null) {
+					running = false;
+					return;
+				}
+			}
+			next.run();
+		}
+	}
+}
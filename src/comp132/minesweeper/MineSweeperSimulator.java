@@ -0,0 +1,309 @@
+package comp132.minesweeper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A MineSweeperSimulator generates and plays many boards of one size on
+ * all of the processors and collects statistics about the games: the
+ * win rate, the number of cells uncovered by each click and the 3BV of
+ * the boards.
+ *
+ * Game number i is always played on the board made from the seed
+ * boardSeed(masterSeed, i), whichever thread plays it. Each thread has
+ * its own random number generator, strategy, analyzer and statistics,
+ * and the statistics are only added together once every game has been
+ * played, so the results depend on the master seed alone and not on the
+ * number of threads. The threads share nothing but a counter from which
+ * they take games in blocks.
+ *
+ * Run it as
+ * <pre>
+ * java comp132.minesweeper.MineSweeperSimulator [level] [games] [seed] [threads]
+ * </pre>
+ */
+public class MineSweeperSimulator {
+
+	private static final int BLOCK_GAMES = 1024;
+
+	/**
+	 * Makes the strategy used by one simulator thread.
+	 */
+	public interface StrategyFactory {
+		/**
+		 * Make a new strategy.
+		 *
+		 * @return the strategy.
+		 */
+		MineSweeperStrategy newStrategy();
+	}
+
+	private final int rows;
+	private final int cols;
+	private final int mines;
+	private final StrategyFactory factory;
+
+	/**
+	 * pre: rows > 0 && cols > 0 && rows * cols <= MineSweeperBoard.MAX_CELLS &&
+	 *      mines >= 0 && mines <= rows * cols; factory != null
+	 *
+	 * Construct a simulator that plays boards of the given size.
+	 *
+	 * @param rows the number of rows on each board.
+	 * @param cols the number of columns on each board.
+	 * @param mines the number of mines on each board.
+	 * @param factory makes the strategy for each thread.
+	 */
+	public MineSweeperSimulator(int rows, int cols, int mines, StrategyFactory factory) {
+		assert rows > 0 && cols > 0 && (long) rows * cols <= MineSweeperBoard.MAX_CELLS
+			: "invalid board size";
+		assert mines >= 0 && mines <= rows * cols : "invalid number of mines";
+		assert factory != null : "no strategy";
+		this.rows = rows;
+		this.cols = cols;
+		this.mines = mines;
+		this.factory = factory;
+	}
+
+	/**
+	 * pre: level == BEGINNER_LEVEL || level == INTERMEDIATE_LEVEL ||
+	 *      level == EXPERT_LEVEL; factory != null
+	 *
+	 * Construct a simulator that plays boards at a level of play.
+	 *
+	 * @param level the level of play.
+	 * @param factory makes the strategy for each thread.
+	 */
+	public MineSweeperSimulator(int level, StrategyFactory factory) {
+		this(MineSweeperBoard.getLevelRows(level), MineSweeperBoard.getLevelColumns(level),
+		     MineSweeperBoard.getLevelMines(level), factory);
+	}
+
+	/**
+	 * Get the seed of the board for one game. The seeds of consecutive
+	 * games are spread over all 64 bits by the SplitMix64 finalizer, so
+	 * boards from nearby games or master seeds are unrelated.
+	 *
+	 * @param masterSeed the seed of the whole simulation.
+	 * @param game the number of the game.
+	 * @return the seed for the board of that game.
+	 */
+	public static long boardSeed(long masterSeed, long game) {
+		long z = masterSeed + (game + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * pre: games >= 0 && threads > 0
+	 *
+	 * Play games on the given number of threads.
+	 *
+	 * @param games the number of games to play.
+	 * @param masterSeed the seed the board of every game is made from.
+	 * @param threads the number of threads to play on.
+	 * @return the statistics of all of the games.
+	 */
+	public Statistics run(final long games, final long masterSeed, int threads)
+			throws InterruptedException {
+		assert games >= 0 && threads > 0 : "invalid simulation";
+		final AtomicLong nextBlock = new AtomicLong();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<Statistics>> workers = new ArrayList<Future<Statistics>>();
+		for (int t = 0; t < threads; t++) {
+			workers.add(pool.submit(new Callable<Statistics>() {
+				public Statistics call() {
+					Worker worker = new Worker();
+					long first;
+					while ((first = nextBlock.getAndAdd(BLOCK_GAMES)) < games) {
+						long last = Math.min(first + BLOCK_GAMES, games);
+						for (long game = first; game < last; game++) {
+							worker.play(masterSeed, game);
+						}
+					}
+					return worker.stats;
+				}
+			}));
+		}
+		pool.shutdown();
+		Statistics total = new Statistics(rows * cols);
+		try {
+			for (Future<Statistics> worker : workers) {
+				total.add(worker.get());
+			}
+		}
+		catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		return total;
+	}
+
+	/**
+	 * The state of one simulator thread. It listens to the board being
+	 * played to measure the clicks that uncover cells.
+	 */
+	private class Worker implements MineSweeperBoardListener {
+		final Statistics stats = new Statistics(rows * cols);
+		final MineSweeperStrategy strategy = factory.newStrategy();
+		final MineSweeperBoardAnalyzer analyzer = new MineSweeperBoardAnalyzer();
+		final Random rnd = new Random();
+
+		void play(long masterSeed, long game) {
+			rnd.setSeed(boardSeed(masterSeed, game));
+			MineSweeperBoard board = new MineSweeperBoard(rows, cols, mines, rnd);
+			stats.threeBV[analyzer.threeBV(board)]++;
+			board.addBoardListener(this);
+			if (strategy.play(board)) {
+				stats.wins++;
+			}
+			stats.games++;
+		}
+
+		public void cellsChanged(MineSweeperBoard board, CellList changed) {
+			stats.moves++;
+			int cell = board.getCell(changed.getRow(0), changed.getCol(0));
+			if (cell >= 0 || cell == MineSweeperBoard.UNCOVERED_MINE) {
+				// Bucket b holds the clicks that uncovered 2^b to
+				// 2^(b+1) - 1 cells.
+				stats.cascades[31 - Integer.numberOfLeadingZeros(changed.size())]++;
+			}
+		}
+
+		public void boardChanged(MineSweeperBoard board) {
+		}
+	}
+
+	/**
+	 * The totals of a number of simulated games.
+	 */
+	public static class Statistics {
+		private long games;
+		private long wins;
+		private long moves;
+		private final long[] cascades = new long[32];
+		private final long[] threeBV;
+
+		Statistics(int cells) {
+			threeBV = new long[cells + 1];
+		}
+
+		void add(Statistics other) {
+			games += other.games;
+			wins += other.wins;
+			moves += other.moves;
+			for (int i = 0; i < cascades.length; i++) {
+				cascades[i] += other.cascades[i];
+			}
+			for (int i = 0; i < threeBV.length; i++) {
+				threeBV[i] += other.threeBV[i];
+			}
+		}
+
+		public long getGames() {
+			return games;
+		}
+
+		public long getWins() {
+			return wins;
+		}
+
+		/**
+		 * Get the number of uncover and flag moves that changed the board.
+		 *
+		 * @return the number of moves.
+		 */
+		public long getMoves() {
+			return moves;
+		}
+
+		/**
+		 * Get the fraction of the games that were won.
+		 *
+		 * @return the win rate, from 0 to 1.
+		 */
+		public double getWinRate() {
+			return games == 0 ? 0 : (double) wins / games;
+		}
+
+		/**
+		 * Get the histogram of the number of cells uncovered by each
+		 * click. Entry b counts the clicks that uncovered at least 2^b
+		 * and fewer than 2^(b+1) cells.
+		 *
+		 * @return a copy of the histogram.
+		 */
+		public long[] getCascadeHistogram() {
+			return cascades.clone();
+		}
+
+		/**
+		 * Get the distribution of the 3BV of the boards. Entry v counts
+		 * the boards with a 3BV of v.
+		 *
+		 * @return a copy of the distribution.
+		 */
+		public long[] getThreeBVHistogram() {
+			return threeBV.clone();
+		}
+
+		/**
+		 * Get the smallest 3BV such that at least the given fraction of
+		 * the boards have that 3BV or less.
+		 *
+		 * @param fraction the fraction of the boards, from 0 to 1.
+		 * @return the 3BV, or 0 if no games have been played.
+		 */
+		public int getThreeBVPercentile(double fraction) {
+			long seen = 0;
+			for (int v = 0; v < threeBV.length; v++) {
+				seen += threeBV[v];
+				if (seen > 0 && seen >= fraction * games) {
+					return v;
+				}
+			}
+			return 0;
+		}
+
+		public String toString() {
+			StringBuilder text = new StringBuilder();
+			text.append(String.format("%d games, %.2f%% won, %.1f moves per game%n",
+						  games, 100 * getWinRate(), (double) moves / Math.max(games, 1)));
+			text.append(String.format("3BV p10 %d, median %d, p90 %d%n",
+						  getThreeBVPercentile(0.1), getThreeBVPercentile(0.5),
+						  getThreeBVPercentile(0.9)));
+			text.append("cells per uncover:");
+			for (int b = 0; b < cascades.length; b++) {
+				if (cascades[b] > 0) {
+					text.append(" ").append(1L << b).append("+:").append(cascades[b]);
+				}
+			}
+			return text.toString();
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int level = args.length > 0 ? Integer.parseInt(args[0]) : MineSweeperBoard.EXPERT_LEVEL;
+		long games = args.length > 1 ? Long.parseLong(args[1]) : 1000000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 132;
+		int threads = args.length > 3 ? Integer.parseInt(args[3])
+			: Runtime.getRuntime().availableProcessors();
+		MineSweeperSimulator simulator = new MineSweeperSimulator(level, new StrategyFactory() {
+			public MineSweeperStrategy newStrategy() {
+				return new MineSweeperSolver();
+			}
+		});
+		long start = System.nanoTime();
+		Statistics stats = simulator.run(games, seed, threads);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(stats);
+		System.out.printf("%.0f games per second on %d threads%n", games / seconds, threads);
+	}
+}
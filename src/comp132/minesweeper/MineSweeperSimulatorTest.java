@@ -0,0 +1,41 @@
+package comp132.minesweeper;
+
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class MineSweeperSimulatorTest {
+
+	private static MineSweeperSimulator expertSimulator() {
+		return new MineSweeperSimulator(MineSweeperBoard.EXPERT_LEVEL,
+				new MineSweeperSimulator.StrategyFactory() {
+			public MineSweeperStrategy newStrategy() {
+				return new MineSweeperSolver();
+			}
+		});
+	}
+
+	@Test
+	public void testReproducibleAcrossThreads() throws InterruptedException {
+		MineSweeperSimulator.Statistics one = expertSimulator().run(3000, 7, 1);
+		MineSweeperSimulator.Statistics three = expertSimulator().run(3000, 7, 3);
+		Assert.assertEquals(3000, one.getGames());
+		Assert.assertEquals(one.getWins(), three.getWins());
+		Assert.assertEquals(one.getMoves(), three.getMoves());
+		Assert.assertTrue(Arrays.equals(one.getCascadeHistogram(), three.getCascadeHistogram()));
+		Assert.assertTrue(Arrays.equals(one.getThreeBVHistogram(), three.getThreeBVHistogram()));
+	}
+
+	@Test
+	public void testThreeBV() {
+		MineSweeperBoardAnalyzer analyzer = new MineSweeperBoardAnalyzer();
+		// One opening reaches every safe cell but (1, 0) and (2, 0),
+		// which need a click each.
+		Assert.assertEquals(3, analyzer.threeBV(new MineSweeperBoard()));
+		MineSweeperBoard board = new MineSweeperBoard(1, 3);
+		board.setCell(0, 1, MineSweeperBoard.MINE);
+		Assert.assertEquals(2, analyzer.threeBV(board));
+	}
+}
@@ -0,0 +1,554 @@
+package comp132.minesweeper;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A MineSweeperSolver plays a MineSweeperBoard the way a careful player
+ * would, seeing only what getCell shows a player: covered cells (with or
+ * without a mine underneath), flags and uncovered numbers. Its moves are
+ * made with uncoverCell and flagCell. The only other thing it is told is
+ * the number of mines on the board when the game starts.
+ *
+ * The solver repeats the following until the game is over:
+ * <OL>
+ * <LI>A number whose flags already account for all of its mines has
+ *     only safe cells left around it, and a number with as many
+ *     covered neighbours as unflagged mines has only mines left.
+ * <LI>Two numbers close enough to share covered neighbours are compared.
+ *     If B needs as many more mines than A as B has covered cells that
+ *     A does not, those cells are all mines and A's cells that B does
+ *     not have are all safe. This also covers one number's covered
+ *     cells being a subset of another's.
+ * <LI>When nothing can be deduced, the cell least likely to hold a mine
+ *     is uncovered. Each number next to a cell gives it a chance of
+ *     unflagged mines over covered neighbours and the highest chance is
+ *     used; other cells get the density of the mines left. Ties go to
+ *     the first cell in row-major order, so the solver never behaves
+ *     differently on the same board.
+ * </OL>
+ * The solver keeps its working arrays from one game to the next and
+ * creates no objects while it plays, so one solver can play many games
+ * quickly. A solver is not thread-safe; use one per thread.
+ */
+public class MineSweeperSolver implements MineSweeperStrategy {
+
+	private MineSweeperBoard board;
+	private int rows;
+	private int cols;
+
+	// Cells that are covered and not flagged, and mines not yet flagged.
+	private int unknown;
+	private int minesLeft;
+	private boolean lost;
+
+	// What getCell showed for each cell, kept up to date after every
+	// move from the cells the move changed. When pairs are compared or
+	// a guess is made, each number's unflagged mines and covered
+	// neighbours are worked out once into need and covered.
+	private int[] view = new int[0];
+	private int[] need = new int[0];
+	private int[] covered = new int[0];
+
+	// Numbers whose neighbours have changed since they were last looked at.
+	private int[] pending = new int[0];
+	private boolean[] isPending = new boolean[0];
+	private int numPending;
+
+	private int gameMoves;
+	private int gameGuesses;
+	private long games;
+	private long wins;
+	private long moves;
+	private long guesses;
+
+	/**
+	 * Play a game on a board, guessing whenever nothing can be deduced.
+	 * If no cell has been uncovered yet the first move is a guess.
+	 *
+	 * @param board the board to play.
+	 * @return true if the game was won and false if it was lost.
+	 */
+	public boolean solve(MineSweeperBoard board) {
+		return solve(board, -1, -1, true);
+	}
+
+	/**
+	 * Play a game on a board as a MineSweeperStrategy, starting in the
+	 * middle of the board and guessing whenever nothing can be deduced.
+	 *
+	 * @param board the board to play.
+	 * @return true if the game was won and false if it was lost.
+	 */
+	public boolean play(MineSweeperBoard board) {
+		return solve(board, board.getRows() / 2, board.getColumns() / 2, true);
+	}
+
+	/**
+	 * Play a game on a board, starting by uncovering the given cell and
+	 * guessing whenever nothing can be deduced.
+	 *
+	 * @param board the board to play.
+	 * @param row the row of the first cell to uncover.
+	 * @param col the column of the first cell to uncover.
+	 * @return true if the game was won and false if it was lost.
+	 */
+	public boolean solve(MineSweeperBoard board, int row, int col) {
+		return solve(board, row, col, true);
+	}
+
+	/**
+	 * pre: board != null && board.getTopology() == MineSweeperTopology.SQUARE
+	 *
+	 * Play a game on a board, optionally starting by uncovering a cell.
+	 * Without guessing the solver stops as soon as it cannot deduce a
+	 * move, so the result tells whether the board can be solved by
+	 * logic alone from that first cell.
+	 *
+	 * @param board the board to play.
+	 * @param row the row of the first cell to uncover, or -1 for none.
+	 * @param col the column of the first cell to uncover, or -1 for none.
+	 * @param guess true to guess when nothing can be deduced.
+	 * @return true if the game was won and false otherwise.
+	 */
+	public boolean solve(MineSweeperBoard board, int row, int col, boolean guess) {
+		assert board != null : "no board";
+		assert board.getTopology() == MineSweeperTopology.SQUARE : "square boards only";
+		start(board);
+		if (row >= 0 && col >= 0 && isUnknown(board.getCell(row, col))) {
+			uncover(row * cols + col);
+		}
+		while (!lost && unknown > 0) {
+			if (numPending > 0) {
+				int i = pending[--numPending];
+				isPending[i] = false;
+				applySingle(i);
+			} else if (minesLeft == 0 || minesLeft == unknown) {
+				resolveRest();
+			} else if (!applyPairs()) {
+				if (!guess) {
+					break;
+				}
+				gameGuesses++;
+				uncover(bestGuess());
+			}
+		}
+		boolean won = !lost && unknown == 0;
+		games++;
+		if (won) {
+			wins++;
+		}
+		moves += gameMoves;
+		guesses += gameGuesses;
+		return won;
+	}
+
+	/**
+	 * Get ready to play a board, looking at the cells already uncovered
+	 * or flagged.
+	 */
+	private void start(MineSweeperBoard board) {
+		this.board = board;
+		rows = board.getRows();
+		cols = board.getColumns();
+		int cells = rows * cols;
+		if (pending.length < cells) {
+			pending = new int[cells];
+			isPending = new boolean[cells];
+			view = new int[cells];
+			need = new int[cells];
+			covered = new int[cells];
+		} else {
+			Arrays.fill(isPending, 0, cells, false);
+		}
+		numPending = 0;
+		lost = false;
+		gameMoves = 0;
+		gameGuesses = 0;
+		unknown = 0;
+		int flags = 0;
+		int flaggedMines = 0;
+		for (int i = 0; i < cells; i++) {
+			int cell = board.getCell(i / cols, i % cols);
+			view[i] = cell;
+			if (isUnknown(cell)) {
+				unknown++;
+			} else if (cell == MineSweeperBoard.FLAG) {
+				flags++;
+			} else if (cell == MineSweeperBoard.FLAGGED_MINE) {
+				flags++;
+				flaggedMines++;
+			} else if (cell == MineSweeperBoard.UNCOVERED_MINE) {
+				lost = true;
+			} else if (cell > 0) {
+				markPending(i);
+			}
+		}
+		// getNumMines leaves out flagged mines. Adding them back gives
+		// the total the player was told, from which every flag on the
+		// board is counted off, as on the window's mine counter.
+		minesLeft = board.getNumMines() + flaggedMines - flags;
+	}
+
+	/**
+	 * Look at a number on its own: if all of its mines are flagged its
+	 * other covered neighbours are safe, and if it has as many covered
+	 * neighbours as unflagged mines they are all mines.
+	 */
+	private void applySingle(int i) {
+		int number = cell(i);
+		if (number <= 0) {
+			return;
+		}
+		int row = i / cols;
+		int col = i % cols;
+		int covered = 0;
+		int flags = 0;
+		int lastRow = Math.min(row + 1, rows - 1);
+		int lastCol = Math.min(col + 1, cols - 1);
+		for (int r = Math.max(row - 1, 0); r <= lastRow; r++) {
+			for (int c = Math.max(col - 1, 0); c <= lastCol; c++) {
+				int cell = cell(r * cols + c);
+				if (isUnknown(cell)) {
+					covered++;
+				} else if (cell == MineSweeperBoard.FLAG || cell == MineSweeperBoard.FLAGGED_MINE) {
+					flags++;
+				}
+			}
+		}
+		int needed = number - flags;
+		if (covered == 0 || (needed != 0 && needed != covered)) {
+			return;
+		}
+		for (int r = Math.max(row - 1, 0); r <= lastRow && !lost; r++) {
+			for (int c = Math.max(col - 1, 0); c <= lastCol && !lost; c++) {
+				int j = r * cols + c;
+				if (isUnknown(cell(j))) {
+					if (needed == 0) {
+						uncover(j);
+					} else {
+						flag(j);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compare every pair of numbers that share covered neighbours.
+	 *
+	 * @return true if a move was made.
+	 */
+	private boolean applyPairs() {
+		int cells = rows * cols;
+		countNeeds();
+		for (int a = 0; a < cells; a++) {
+			int needA = need[a];
+			if (needA < 0) {
+				continue;
+			}
+			int rowA = a / cols;
+			int colA = a % cols;
+			int lastRow = Math.min(rowA + 2, rows - 1);
+			int lastCol = Math.min(colA + 2, cols - 1);
+			// Each pair is looked at once, from the number that comes
+			// first, and the rule is tried both ways round.
+			for (int rowB = rowA; rowB <= lastRow; rowB++) {
+				for (int colB = rowB == rowA ? colA + 1 : Math.max(colA - 2, 0);
+				     colB <= lastCol; colB++) {
+					int b = rowB * cols + colB;
+					int needB = need[b];
+					if (needB < 0) {
+						continue;
+					}
+					int shared = covered[a] - coveredOutside(rowA, colA, rowB, colB);
+					int onlyA = covered[a] - shared;
+					int onlyB = covered[b] - shared;
+					if (shared == 0 || onlyA + onlyB == 0) {
+						continue;
+					}
+					if (needB - needA == onlyB) {
+						resolveOutside(rowB, colB, rowA, colA, false);
+						resolveOutside(rowA, colA, rowB, colB, true);
+						return true;
+					} else if (needA - needB == onlyA) {
+						resolveOutside(rowA, colA, rowB, colB, false);
+						resolveOutside(rowB, colB, rowA, colA, true);
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Work out, for every number that still has covered neighbours, how
+	 * many of them are covered and how many unflagged mines it needs.
+	 * Other cells get a need of -1.
+	 */
+	private void countNeeds() {
+		for (int row = 0; row < rows; row++) {
+			int firstRow = Math.max(row - 1, 0);
+			int lastRow = Math.min(row + 1, rows - 1);
+			for (int col = 0; col < cols; col++) {
+				int i = row * cols + col;
+				int number = view[i];
+				need[i] = -1;
+				if (number <= 0) {
+					continue;
+				}
+				int count = 0;
+				int lastCol = Math.min(col + 1, cols - 1);
+				for (int r = firstRow; r <= lastRow; r++) {
+					for (int c = Math.max(col - 1, 0); c <= lastCol; c++) {
+						int cell = view[r * cols + c];
+						if (isUnknown(cell)) {
+							count++;
+						} else if (cell == MineSweeperBoard.FLAG
+								|| cell == MineSweeperBoard.FLAGGED_MINE) {
+							number--;
+						}
+					}
+				}
+				if (count > 0) {
+					need[i] = number;
+					covered[i] = count;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Count the covered cells around (row, col) that are not also
+	 * around (otherRow, otherCol).
+	 */
+	private int coveredOutside(int row, int col, int otherRow, int otherCol) {
+		int count = 0;
+		int lastRow = Math.min(row + 1, rows - 1);
+		int lastCol = Math.min(col + 1, cols - 1);
+		for (int r = Math.max(row - 1, 0); r <= lastRow; r++) {
+			for (int c = Math.max(col - 1, 0); c <= lastCol; c++) {
+				if ((Math.abs(r - otherRow) > 1 || Math.abs(c - otherCol) > 1)
+						&& isUnknown(cell(r * cols + c))) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Flag or uncover the covered cells around (row, col) that are not
+	 * also around (otherRow, otherCol).
+	 */
+	private void resolveOutside(int row, int col, int otherRow, int otherCol, boolean safe) {
+		int lastRow = Math.min(row + 1, rows - 1);
+		int lastCol = Math.min(col + 1, cols - 1);
+		for (int r = Math.max(row - 1, 0); r <= lastRow && !lost; r++) {
+			for (int c = Math.max(col - 1, 0); c <= lastCol && !lost; c++) {
+				int j = r * cols + c;
+				if ((Math.abs(r - otherRow) > 1 || Math.abs(c - otherCol) > 1)
+						&& isUnknown(cell(j))) {
+					if (safe) {
+						uncover(j);
+					} else {
+						flag(j);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Once every mine is flagged the rest of the board is safe, and once
+	 * every covered cell must be a mine they can all be flagged.
+	 */
+	private void resolveRest() {
+		boolean safe = minesLeft == 0;
+		int cells = rows * cols;
+		for (int i = 0; i < cells && !lost; i++) {
+			if (isUnknown(cell(i))) {
+				if (safe) {
+					uncover(i);
+				} else {
+					flag(i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find the covered cell least likely to hold a mine.
+	 *
+	 * @return the row-major index of the cell.
+	 */
+	private int bestGuess() {
+		double density = (double) minesLeft / unknown;
+		int cells = rows * cols;
+		countNeeds();
+		int best = -1;
+		double bestChance = 2;
+		for (int i = 0; i < cells; i++) {
+			if (!isUnknown(cell(i))) {
+				continue;
+			}
+			double chance = -1;
+			int row = i / cols;
+			int col = i % cols;
+			int lastRow = Math.min(row + 1, rows - 1);
+			int lastCol = Math.min(col + 1, cols - 1);
+			for (int r = Math.max(row - 1, 0); r <= lastRow; r++) {
+				for (int c = Math.max(col - 1, 0); c <= lastCol; c++) {
+					int j = r * cols + c;
+					if (need[j] >= 0) {
+						chance = Math.max(chance, (double) need[j] / covered[j]);
+					}
+				}
+			}
+			if (chance < 0) {
+				chance = density;
+			}
+			if (chance < bestChance) {
+				bestChance = chance;
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	private void uncover(int i) {
+		CellList changed = board.uncoverCell(i / cols, i % cols);
+		gameMoves++;
+		for (int k = 0; k < changed.size(); k++) {
+			int row = changed.getRow(k);
+			int col = changed.getCol(k);
+			int cell = board.getCell(row, col);
+			view[row * cols + col] = cell;
+			unknown--;
+			if (cell == MineSweeperBoard.UNCOVERED_MINE) {
+				lost = true;
+				return;
+			}
+			markAround(row, col);
+		}
+	}
+
+	private void flag(int i) {
+		board.flagCell(i / cols, i % cols);
+		view[i] = board.getCell(i / cols, i % cols);
+		gameMoves++;
+		unknown--;
+		minesLeft--;
+		markAround(i / cols, i % cols);
+	}
+
+	/**
+	 * A cell has changed, so it and the numbers around it may now
+	 * allow a deduction.
+	 */
+	private void markAround(int row, int col) {
+		int lastRow = Math.min(row + 1, rows - 1);
+		int lastCol = Math.min(col + 1, cols - 1);
+		for (int r = Math.max(row - 1, 0); r <= lastRow; r++) {
+			for (int c = Math.max(col - 1, 0); c <= lastCol; c++) {
+				int j = r * cols + c;
+				if (cell(j) > 0) {
+					markPending(j);
+				}
+			}
+		}
+	}
+
+	private void markPending(int i) {
+		if (!isPending[i]) {
+			isPending[i] = true;
+			pending[numPending++] = i;
+		}
+	}
+
+	private int cell(int i) {
+		return view[i];
+	}
+
+	/**
+	 * Determine if a cell looks covered and unflagged to a player.
+	 */
+	private static boolean isUnknown(int cell) {
+		return cell == MineSweeperBoard.COVERED_CELL || cell == MineSweeperBoard.MINE;
+	}
+
+	/**
+	 * Get the number of games played by this solver.
+	 *
+	 * @return the number of games.
+	 */
+	public long getGames() {
+		return games;
+	}
+
+	/**
+	 * Get the number of games won by this solver.
+	 *
+	 * @return the number of wins.
+	 */
+	public long getWins() {
+		return wins;
+	}
+
+	/**
+	 * Get the number of uncover and flag moves made over all games.
+	 *
+	 * @return the number of moves.
+	 */
+	public long getMoves() {
+		return moves;
+	}
+
+	/**
+	 * Get the number of guesses made over all games.
+	 *
+	 * @return the number of guesses.
+	 */
+	public long getGuesses() {
+		return guesses;
+	}
+
+	/**
+	 * Get the number of guesses made in the last game played, which is
+	 * a measure of how hard that board was.
+	 *
+	 * @return the number of guesses.
+	 */
+	public int getLastGuesses() {
+		return gameGuesses;
+	}
+
+	/**
+	 * Play many games at a level of play, each on a board from its own
+	 * seed and starting in the middle of the board, and print the
+	 * results and the rate at which games were played:
+	 * <pre>
+	 * java comp132.minesweeper.MineSweeperSolver [level] [games]
+	 * </pre>
+	 */
+	public static void main(String[] args) {
+		int level = args.length > 0 ? Integer.parseInt(args[0]) : MineSweeperBoard.EXPERT_LEVEL;
+		int numGames = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		int rows = MineSweeperBoard.getLevelRows(level);
+		int cols = MineSweeperBoard.getLevelColumns(level);
+		MineSweeperSolver solver = new MineSweeperSolver();
+		Random rnd = new Random();
+		long start = System.nanoTime();
+		for (int i = 0; i < numGames; i++) {
+			rnd.setSeed(i);
+			solver.solve(new MineSweeperBoard(level, rnd), rows / 2, cols / 2);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d games, %.1f%% won, %.2f guesses and %.1f moves per game, "
+				  + "%.0f games per second%n", solver.getGames(),
+				  100.0 * solver.getWins() / solver.getGames(),
+				  (double) solver.getGuesses() / solver.getGames(),
+				  (double) solver.getMoves() / solver.getGames(), numGames / seconds);
+	}
+}
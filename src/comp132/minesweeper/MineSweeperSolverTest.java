@@ -0,0 +1,55 @@
+package comp132.minesweeper;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class MineSweeperSolverTest {
+
+	@Test
+	public void testSolveByLogic() {
+		MineSweeperBoard board = new MineSweeperBoard();
+		MineSweeperSolver solver = new MineSweeperSolver();
+		Assert.assertTrue(solver.solve(board, 0, 3, false));
+		Assert.assertTrue(board.gameWon());
+		Assert.assertEquals(MineSweeperBoard.FLAGGED_MINE, board.getCell(0, 0));
+		Assert.assertEquals(MineSweeperBoard.FLAGGED_MINE, board.getCell(2, 1));
+		Assert.assertEquals(0, solver.getLastGuesses());
+	}
+
+	@Test
+	public void testSolveNeedsGuess() {
+		// Nothing tells the two cells apart, so logic alone gets nowhere.
+		MineSweeperBoard board = new MineSweeperBoard(1, 2);
+		board.setCell(0, 1, MineSweeperBoard.MINE);
+		MineSweeperSolver solver = new MineSweeperSolver();
+		Assert.assertFalse(solver.solve(board, -1, -1, false));
+		Assert.assertEquals(0, solver.getMoves());
+		Assert.assertEquals(MineSweeperBoard.COVERED_CELL, board.getCell(0, 0));
+
+		Assert.assertTrue(solver.solve(board));
+		Assert.assertEquals(1, solver.getLastGuesses());
+		Assert.assertTrue(board.gameWon());
+		Assert.assertEquals(2, solver.getGames());
+		Assert.assertEquals(1, solver.getWins());
+	}
+
+	@Test
+	public void testSolveDeterministic() {
+		MineSweeperSolver first = new MineSweeperSolver();
+		MineSweeperSolver second = new MineSweeperSolver();
+		for (int i = 0; i < 200; i++) {
+			MineSweeperBoard a = new MineSweeperBoard(MineSweeperBoard.EXPERT_LEVEL, new Random(i));
+			MineSweeperBoard b = new MineSweeperBoard(MineSweeperBoard.EXPERT_LEVEL, new Random(i));
+			boolean won = first.solve(a, 7, 10);
+			Assert.assertEquals(won, second.solve(b, 7, 10));
+			Assert.assertEquals(won, a.gameWon());
+			Assert.assertEquals(!won, a.gameLost());
+		}
+		Assert.assertEquals(first.getMoves(), second.getMoves());
+		Assert.assertEquals(first.getGuesses(), second.getGuesses());
+		Assert.assertTrue(first.getWins() > 0);
+	}
+}
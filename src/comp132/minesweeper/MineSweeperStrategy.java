@@ -0,0 +1,20 @@
+package comp132.minesweeper;
+
+/**
+ * A MineSweeperStrategy is a way of playing a game of Mine Sweeper
+ * without a player, used by MineSweeperSimulator. A strategy may keep
+ * working state between games, so each simulator thread is given its
+ * own strategy.
+ */
+public interface MineSweeperStrategy {
+
+	/**
+	 * Play a game on a board until it is won or lost, or the strategy
+	 * gives up.
+	 *
+	 * @param board the board to play, on which no cell has been
+	 *        uncovered or flagged.
+	 * @return true if the game was won and false otherwise.
+	 */
+	boolean play(MineSweeperBoard board);
+}
@@ -0,0 +1,238 @@
+package comp132.minesweeper;
+
+import java.util.Arrays;
+
+/**
+ * A MineSweeperTopology decides which cells of a board are neighbours:
+ * which cells a number counts the mines of, which cells an empty cell
+ * uncovers and which cells a chord opens. There are three:
+ * <ul>
+ * <li>SQUARE, the usual grid, where a cell touches the eight cells
+ *     around it and the edges of the board are walls.
+ * <li>TORUS, the same grid with its edges joined, so that the top row
+ *     touches the bottom row and the first column the last.
+ * <li>HEX, a grid of hexagons laid out in rows, each odd row shifted
+ *     half a cell to the right, where a cell touches six others.
+ * </ul>
+ *
+ * A board does not look at the topology while it is played. It builds
+ * a Table once, which holds the row-major index offsets of the
+ * neighbours of every kind of cell (corner, edge or inside, even or odd
+ * row), so that visiting the neighbours of a cell is a loop over a
+ * short array with no bounds checks.
+ */
+public final class MineSweeperTopology {
+
+	/**
+	 * The square grid with walls at its edges.
+	 */
+	public static final MineSweeperTopology SQUARE = new MineSweeperTopology(0, "Square", false,
+		new int[][] {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}},
+		new int[][] {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}});
+
+	/**
+	 * The square grid with opposite edges joined.
+	 */
+	public static final MineSweeperTopology TORUS = new MineSweeperTopology(1, "Torus", true,
+		new int[][] {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}},
+		new int[][] {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}});
+
+	/**
+	 * The hexagonal grid, odd rows shifted half a cell to the right.
+	 */
+	public static final MineSweeperTopology HEX = new MineSweeperTopology(2, "Hex", false,
+		new int[][] {{-1, -1}, {-1, 0}, {0, -1}, {0, 1}, {1, -1}, {1, 0}},
+		new int[][] {{-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, 0}, {1, 1}});
+
+	private static final MineSweeperTopology[] ALL = {SQUARE, TORUS, HEX};
+
+	private final int id;
+	private final String name;
+	private final boolean wraps;
+	// The row and column offsets of the neighbours of a cell in an even
+	// row and in an odd row.
+	private final int[][] evenRows;
+	private final int[][] oddRows;
+
+	private MineSweeperTopology(int id, String name, boolean wraps, int[][] evenRows,
+			int[][] oddRows) {
+		this.id = id;
+		this.name = name;
+		this.wraps = wraps;
+		this.evenRows = evenRows;
+		this.oddRows = oddRows;
+	}
+
+	/**
+	 * Get every topology, in the order of their ids.
+	 *
+	 * @return a new array of the topologies.
+	 */
+	public static MineSweeperTopology[] values() {
+		return ALL.clone();
+	}
+
+	/**
+	 * Find a topology by the number saved games know it by.
+	 *
+	 * @param id the number of the topology.
+	 * @return the topology, or null if there is none with that number.
+	 */
+	public static MineSweeperTopology forId(int id) {
+		return id >= 0 && id < ALL.length ? ALL[id] : null;
+	}
+
+	/**
+	 * Get the number saved games know this topology by.
+	 *
+	 * @return the number.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Determine if the edges of the board are joined.
+	 *
+	 * @return true if every cell has the same number of neighbours.
+	 */
+	public boolean wraps() {
+		return wraps;
+	}
+
+	/**
+	 * Determine if odd rows are drawn half a cell to the right.
+	 *
+	 * @return true for the hexagonal grid.
+	 */
+	public boolean shiftsOddRows() {
+		return this == HEX;
+	}
+
+	public String toString() {
+		return name;
+	}
+
+	/**
+	 * pre: rows > 0 && cols > 0
+	 *
+	 * Build the neighbour table of a board of the given size.
+	 *
+	 * @param rows the number of rows on the board.
+	 * @param cols the number of columns on the board.
+	 * @return the table.
+	 */
+	Table table(int rows, int cols) {
+		return new Table(this, rows, cols);
+	}
+
+	/**
+	 * The neighbours of the cells of a board of one size. A cell's kind
+	 * is its row's kind plus its column's kind, both looked up in small
+	 * arrays: whether the row is the first, last or another, and whether
+	 * it is even or odd, and whether the column is the first, last or
+	 * another. All cells of a kind have their neighbours at the same
+	 * offsets from themselves, even across a joined edge, so one array
+	 * of offsets serves them all.
+	 */
+	static final class Table {
+		private final int cols;
+		private final byte[] rowKind;
+		private final byte[] colKind;
+		private final int[][] offsets = new int[18][];
+		private final int maxNeighbours;
+
+		Table(MineSweeperTopology topology, int rows, int cols) {
+			assert rows > 0 && cols > 0 : "invalid board size";
+			this.cols = cols;
+			rowKind = new byte[rows];
+			colKind = new byte[cols];
+			for (int r = 0; r < rows; r++) {
+				int edge = r == 0 ? 0 : r == rows - 1 ? 2 : 1;
+				rowKind[r] = (byte) (6 * edge + 3 * (r & 1));
+			}
+			for (int c = 0; c < cols; c++) {
+				colKind[c] = (byte) (c == 0 ? 0 : c == cols - 1 ? 2 : 1);
+			}
+			// Every kind of cell turns up among the first three rows, the
+			// last two, and the first two columns and the last.
+			int most = 0;
+			for (int r : new int[] {0, 1, 2, rows - 2, rows - 1}) {
+				for (int c : new int[] {0, 1, cols - 1}) {
+					if (r >= 0 && r < rows && c >= 0 && c < cols
+					    && offsets[rowKind[r] + colKind[c]] == null) {
+						int[] found = topology.offsets(r, c, rows, cols);
+						offsets[rowKind[r] + colKind[c]] = found;
+						most = Math.max(most, found.length);
+					}
+				}
+			}
+			maxNeighbours = most;
+		}
+
+		/**
+		 * Get the offsets from a cell's row-major index to those of
+		 * its neighbours. The array must not be changed.
+		 *
+		 * @param row the row of the cell.
+		 * @param col the column of the cell.
+		 * @return the offsets.
+		 */
+		int[] offsets(int row, int col) {
+			return offsets[rowKind[row] + colKind[col]];
+		}
+
+		/**
+		 * Get the offsets of the neighbours of a cell by its index.
+		 *
+		 * @param index the row-major index of the cell.
+		 * @return the offsets.
+		 */
+		int[] offsets(int index) {
+			return offsets(index / cols, index % cols);
+		}
+
+		/**
+		 * Get the largest number of neighbours any cell has.
+		 *
+		 * @return the number of neighbours.
+		 */
+		int maxNeighbours() {
+			return maxNeighbours;
+		}
+	}
+
+	/**
+	 * Work out the index offsets of the neighbours of one cell, leaving
+	 * out cells off the board, the cell itself and, on small joined
+	 * boards, cells reached twice.
+	 */
+	private int[] offsets(int row, int col, int rows, int cols) {
+		int[][] steps = (row & 1) == 0 ? evenRows : oddRows;
+		int[] found = new int[steps.length];
+		int count = 0;
+		for (int[] step : steps) {
+			int r = row + step[0];
+			int c = col + step[1];
+			if (wraps) {
+				r = (r + rows) % rows;
+				c = (c + cols) % cols;
+			} else if (r < 0 || r >= rows || c < 0 || c >= cols) {
+				continue;
+			}
+			int offset = (r - row) * cols + (c - col);
+			boolean seen = offset == 0;
+			for (int i = 0; i < count && !seen; i++) {
+				seen = found[i] == offset;
+			}
+			if (!seen) {
+				found[count++] = offset;
+			}
+		}
+		return Arrays.copyOf(found, count);
+	}
+}
@@ -0,0 +1,106 @@
+package comp132.minesweeper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class MineSweeperTopologyTest {
+
+	@Test
+	public void testNeighbourCounts() {
+		MineSweeperTopology.Table square = MineSweeperTopology.SQUARE.table(5, 6);
+		Assert.assertEquals(3, square.offsets(0, 0).length);
+		Assert.assertEquals(5, square.offsets(0, 3).length);
+		Assert.assertEquals(8, square.offsets(2, 3).length);
+		Assert.assertEquals(3, square.offsets(4, 5).length);
+
+		MineSweeperTopology.Table torus = MineSweeperTopology.TORUS.table(5, 6);
+		Assert.assertEquals(8, torus.offsets(0, 0).length);
+		Assert.assertEquals(8, torus.offsets(4, 5).length);
+		// On a torus two rows high the rows above and below are the same.
+		Assert.assertEquals(5, MineSweeperTopology.TORUS.table(2, 6).offsets(1, 3).length);
+
+		MineSweeperTopology.Table hex = MineSweeperTopology.HEX.table(5, 6);
+		Assert.assertEquals(6, hex.offsets(2, 3).length);
+		Assert.assertEquals(6, hex.offsets(1, 3).length);
+		Assert.assertEquals(2, hex.offsets(0, 0).length);
+		Assert.assertEquals(3, hex.offsets(1, 5).length);
+	}
+
+	@Test
+	public void testTorusWrapsAround() {
+		MineSweeperBoard board = new MineSweeperBoard(5, 5, 0, MineSweeperTopology.TORUS);
+		board.setCell(2, 2, MineSweeperBoard.MINE);
+		board.setCell(0, 0, MineSweeperBoard.MINE);
+		Assert.assertEquals(1, board.numAdjMines(4, 4));
+		Assert.assertEquals(1, board.numAdjMines(0, 4));
+		Assert.assertEquals(2, board.numAdjMines(1, 1));
+		board.setCell(0, 0, MineSweeperBoard.COVERED_CELL);
+
+		// The cascade crosses the edges, so every safe cell opens.
+		Assert.assertEquals(24, board.uncoverCell(4, 0).size());
+		Assert.assertFalse(board.gameLost());
+	}
+
+	@Test
+	public void testHexNeighbours() {
+		MineSweeperBoard board = new MineSweeperBoard(4, 4, 0, MineSweeperTopology.HEX);
+		board.setCell(1, 1, MineSweeperBoard.MINE);
+		// Row 1 is shifted right, so it touches columns 1 and 2 above.
+		Assert.assertEquals(1, board.numAdjMines(0, 1));
+		Assert.assertEquals(1, board.numAdjMines(0, 2));
+		Assert.assertEquals(0, board.numAdjMines(0, 0));
+		Assert.assertEquals(1, board.numAdjMines(2, 2));
+		Assert.assertEquals(0, board.numAdjMines(2, 0));
+
+		board.uncoverCell(0, 1);
+		board.flagCell(1, 1);
+		// The chord opens the other neighbours, (0, 0), (0, 2) and
+		// (1, 0). (0, 0) is empty, but its only other neighbour is (1, 0).
+		Assert.assertEquals(3, board.chordCell(0, 1).size());
+		Assert.assertEquals(MineSweeperBoard.COVERED_CELL, board.getCell(0, 3));
+	}
+
+	@Test
+	public void testLargeTorusCountsInParallel() {
+		int rows = 1024;
+		int cols = 1025;
+		MineSweeperBoard board = new MineSweeperBoard(rows, cols, 200000, new Random(5),
+							      MineSweeperTopology.TORUS);
+		Random rnd = new Random(6);
+		for (int i = 0; i < 2000; i++) {
+			int row = rnd.nextInt(2) == 0 ? rnd.nextInt(rows) : rnd.nextInt(2) * (rows - 1);
+			int col = rnd.nextInt(cols);
+			int mines = 0;
+			for (int r = row - 1; r <= row + 1; r++) {
+				for (int c = col - 1; c <= col + 1; c++) {
+					int cell = board.getCell((r + rows) % rows, (c + cols) % cols);
+					if ((r != row || c != col) && cell == MineSweeperBoard.MINE) {
+						mines++;
+					}
+				}
+			}
+			Assert.assertEquals(mines, board.numAdjMines(row, col));
+		}
+	}
+
+	@Test
+	public void testSavedGameKeepsTopology() throws IOException {
+		MineSweeperBoard board = new MineSweeperBoard(12, 9, 20, new Random(3),
+							      MineSweeperTopology.HEX);
+		File file = File.createTempFile("minesweeper", ".msw");
+		file.deleteOnExit();
+		MineSweeperBoardIO.save(board, 3, 0, file);
+		MineSweeperBoard loaded = MineSweeperBoardIO.load(file).getBoard();
+		Assert.assertSame(MineSweeperTopology.HEX, loaded.getTopology());
+		for (int r = 0; r < 12; r++) {
+			for (int c = 0; c < 9; c++) {
+				Assert.assertEquals(board.numAdjMines(r, c), loaded.numAdjMines(r, c));
+			}
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package comp132.minesweeper;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A BoardStorage for giant boards on which most cells stay covered for
+ * the whole game. Only the mines are stored for every cell, one bit
+ * each. The flagged and uncovered bits are kept in tiles of TILE_CELLS
+ * cells, runs of whole rows on all but the widest boards, and a tile is
+ * only made when a cell in it is first flagged or uncovered. Until then
+ * the tile is null and its cells are read from the mine bits alone.
+ * The heap a game uses beyond the mine bits grows with the part of the
+ * board the player has touched, not with the size of the board.
+ *
+ * Nor are adjacent mine counts stored: getAdjacent counts the mine bits
+ * of a cell's neighbours each time it is asked, so the counts are always
+ * right and addAdjacent does nothing.
+ *
+ * Tiles hold their bits in the same words PackedBoardStorage would, so
+ * bands that reveal the board in parallel, which never share a word,
+ * never share one here either. Tiles are made under a lock, since two
+ * bands may both reach a tile that is split between them.
+ */
+class SparseBoardStorage extends BoardStorage {
+
+	/**
+	 * The number of cells in a tile: 64 words of bits.
+	 */
+	static final int TILE_CELLS = 4096;
+
+	private static final int WORDS = TILE_CELLS / 64;
+
+	private final int size;
+	private final MineSweeperTopology.Table neighbours;
+	private final long[] mined;
+
+	/*
+	 * The flagged bits of a tile in its first WORDS words and the
+	 * uncovered bits in the rest, or null for a tile with neither.
+	 */
+	private final long[][] tiles;
+
+	/**
+	 * pre: size > 0; neighbours is the table of a board of size cells
+	 *
+	 * Construct a storage in which every cell is COVERED_CELL.
+	 *
+	 * @param size the number of cells.
+	 * @param neighbours the neighbours of each cell, from which the
+	 *        adjacent mine counts are worked out.
+	 */
+	SparseBoardStorage(int size, MineSweeperTopology.Table neighbours) {
+		assert size > 0 : "invalid size";
+		this.size = size;
+		this.neighbours = neighbours;
+		mined = new long[(size + 63) >>> 6];
+		tiles = new long[(size + TILE_CELLS - 1) / TILE_CELLS][];
+	}
+
+	/**
+	 * Construct a storage around bits that have already been filled in,
+	 * without copying them.
+	 */
+	private SparseBoardStorage(int size, MineSweeperTopology.Table neighbours, long[] mined,
+				   long[][] tiles) {
+		this.size = size;
+		this.neighbours = neighbours;
+		this.mined = mined;
+		this.tiles = tiles;
+	}
+
+	int size() {
+		return size;
+	}
+
+	int get(int index) {
+		long bit = 1L << index;
+		boolean isMined = (mined[index >>> 6] & bit) != 0;
+		long[] tile = tiles[index / TILE_CELLS];
+		if (tile == null) {
+			return isMined ? MineSweeperBoard.MINE : MineSweeperBoard.COVERED_CELL;
+		}
+		int word = (index >>> 6) % WORDS;
+		if (isMined) {
+			if ((tile[word] & bit) != 0) {
+				return MineSweeperBoard.FLAGGED_MINE;
+			} else if ((tile[WORDS + word] & bit) != 0) {
+				return MineSweeperBoard.UNCOVERED_MINE;
+			}
+			return MineSweeperBoard.MINE;
+		} else if ((tile[word] & bit) != 0) {
+			return MineSweeperBoard.FLAG;
+		} else if ((tile[WORDS + word] & bit) != 0) {
+			return getAdjacent(index);
+		}
+		return MineSweeperBoard.COVERED_CELL;
+	}
+
+	void set(int index, int value) {
+		long bit = 1L << index;
+		int word = index >>> 6;
+		boolean isMined = isMine(value);
+		if (((mined[word] & bit) != 0) != isMined) {
+			mined[word] ^= bit;
+		}
+		boolean isFlagged = value == MineSweeperBoard.FLAG
+				|| value == MineSweeperBoard.FLAGGED_MINE;
+		boolean isUncovered = value >= 0 || value == MineSweeperBoard.UNCOVERED_MINE;
+		long[] tile = tiles[index / TILE_CELLS];
+		if (tile == null) {
+			if (!isFlagged && !isUncovered) {
+				return;
+			}
+			tile = tile(index / TILE_CELLS);
+		}
+		word %= WORDS;
+		tile[word] = isFlagged ? tile[word] | bit : tile[word] & ~bit;
+		tile[WORDS + word] = isUncovered ? tile[WORDS + word] | bit : tile[WORDS + word] & ~bit;
+	}
+
+	/**
+	 * Get a tile, making it if no other thread has.
+	 */
+	private synchronized long[] tile(int t) {
+		if (tiles[t] == null) {
+			tiles[t] = new long[2 * WORDS];
+		}
+		return tiles[t];
+	}
+
+	int getAdjacent(int index) {
+		int count = 0;
+		for (int offset : neighbours.offsets(index)) {
+			int next = index + offset;
+			count += (int) (mined[next >>> 6] >>> next) & 1;
+		}
+		return count;
+	}
+
+	void addAdjacent(int index, int delta) {
+		// The counts are worked out from the mines when they are asked for.
+	}
+
+	boolean countsAdjacent() {
+		return true;
+	}
+
+	/**
+	 * Get the number of tiles that have been made.
+	 *
+	 * @return the number of tiles.
+	 */
+	int getTiles() {
+		int count = 0;
+		for (long[] tile : tiles) {
+			if (tile != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	BoardStorage copy() {
+		long[][] copied = new long[tiles.length][];
+		for (int t = 0; t < tiles.length; t++) {
+			if (tiles[t] != null) {
+				copied[t] = tiles[t].clone();
+			}
+		}
+		return new SparseBoardStorage(size, neighbours, mined.clone(), copied);
+	}
+
+	void writeCells(DataOutputStream out) throws IOException {
+		for (long word : mined) {
+			out.writeLong(word);
+		}
+		for (int half = 0; half < 2; half++) {
+			for (int word = 0; word < mined.length; word++) {
+				long[] tile = tiles[word / WORDS];
+				out.writeLong(tile == null ? 0 : tile[half * WORDS + word % WORDS]);
+			}
+		}
+		for (int i = 0; i < size; i += 2) {
+			int pair = getAdjacent(i);
+			if (i + 1 < size) {
+				pair |= getAdjacent(i + 1) << 4;
+			}
+			out.writeByte(pair);
+		}
+	}
+}